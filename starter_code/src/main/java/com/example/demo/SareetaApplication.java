@@ -1,20 +1,27 @@
 package com.example.demo;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import com.example.demo.security.PooledBCryptPasswordEncoder;
 
 @EnableJpaRepositories("com.example.demo.model.persistence.repositories")
 @EntityScan("com.example.demo.model.persistence")
 @SpringBootApplication(exclude = {SecurityAutoConfiguration.class})
+@EnableScheduling
 public class SareetaApplication {
-	@Bean
-	public BCryptPasswordEncoder bCryptPasswordEncoder(){
-		return new BCryptPasswordEncoder();
+	@Bean(destroyMethod = "shutdown")
+	public PooledBCryptPasswordEncoder bCryptPasswordEncoder(
+			@Value("${security.password-hashing.threads:0}") int threads,
+			@Value("${security.password-hashing.queue-capacity:64}") int queueCapacity){
+		return new PooledBCryptPasswordEncoder(
+				threads > 0 ? threads : Runtime.getRuntime().availableProcessors(), queueCapacity);
 	}
 	public static void main(String[] args) {
 		SpringApplication.run(SareetaApplication.class, args);
@@ -0,0 +1,171 @@
+package com.example.demo.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Size-bounded in-process cache. Every entry carries its own expiry time and the least
+ * recently used entry is dropped once the cache is full. Lookups and inserts are O(1).
+ */
+public class ExpiringLruCache<K, V> {
+
+	private final int maximumSize;
+
+	private final LinkedHashMap<K, Entry<V>> entries;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong evictions = new AtomicLong();
+
+	private final LongSupplier clock;
+
+	public ExpiringLruCache(int maximumSize) {
+		this(maximumSize, System::currentTimeMillis);
+	}
+
+	/**
+	 * @param clock the current time in epoch milliseconds, used for every expiry check
+	 */
+	public ExpiringLruCache(int maximumSize, LongSupplier clock) {
+		if (maximumSize <= 0) {
+			throw new IllegalArgumentException("maximumSize must be positive");
+		}
+		this.maximumSize = maximumSize;
+		this.clock = clock;
+		this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+				if (size() > ExpiringLruCache.this.maximumSize) {
+					evictions.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Returns the cached value, or {@code null} when the key is absent or its entry has expired.
+	 */
+	public V get(K key) {
+		long now = clock.getAsLong();
+		synchronized (entries) {
+			Entry<V> entry = entries.get(key);
+			if (entry != null) {
+				if (entry.expiresAt > now) {
+					hits.incrementAndGet();
+					return entry.value;
+				}
+				entries.remove(key);
+			}
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Stores a value until the given epoch millisecond. Values that are already expired are ignored.
+	 */
+	public void put(K key, V value, long expiresAt) {
+		if (expiresAt <= clock.getAsLong()) {
+			return;
+		}
+		synchronized (entries) {
+			entries.put(key, new Entry<>(value, expiresAt));
+		}
+	}
+
+	public void put(K key, V value, long timeToLive, TimeUnit unit) {
+		put(key, value, clock.getAsLong() + unit.toMillis(timeToLive));
+	}
+
+	/**
+	 * Stores the value unless the key already holds a live entry.
+	 *
+	 * @return the live value already stored, or {@code null} when {@code value} was stored
+	 */
+	public V putIfAbsent(K key, V value, long timeToLive, TimeUnit unit) {
+		long now = clock.getAsLong();
+		synchronized (entries) {
+			Entry<V> entry = entries.get(key);
+			if (entry != null && entry.expiresAt > now) {
+				hits.incrementAndGet();
+				return entry.value;
+			}
+			misses.incrementAndGet();
+			entries.put(key, new Entry<>(value, now + unit.toMillis(timeToLive)));
+			return null;
+		}
+	}
+
+	public void invalidate(K key) {
+		synchronized (entries) {
+			entries.remove(key);
+		}
+	}
+
+	public void invalidateAll() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public long hitCount() {
+		return hits.get();
+	}
+
+	public long missCount() {
+		return misses.get();
+	}
+
+	public long evictionCount() {
+		return evictions.get();
+	}
+
+	/**
+	 * Publishes hit, miss, eviction and size meters using the same names as Micrometer's own cache binders.
+	 */
+	public void bindTo(MeterRegistry registry, String cacheName) {
+		FunctionCounter.builder("cache.gets", this, ExpiringLruCache::hitCount)
+				.tag("cache", cacheName).tag("result", "hit")
+				.description("The number of times cache lookup methods have returned a cached value")
+				.register(registry);
+		FunctionCounter.builder("cache.gets", this, ExpiringLruCache::missCount)
+				.tag("cache", cacheName).tag("result", "miss")
+				.description("The number of times cache lookup methods have not returned a value")
+				.register(registry);
+		FunctionCounter.builder("cache.evictions", this, ExpiringLruCache::evictionCount)
+				.tag("cache", cacheName)
+				.description("The number of entries dropped because the cache was full")
+				.register(registry);
+		Gauge.builder("cache.size", this, ExpiringLruCache::size)
+				.tag("cache", cacheName)
+				.description("The number of entries in this cache")
+				.register(registry);
+	}
+
+	private static final class Entry<V> {
+		private final V value;
+		private final long expiresAt;
+
+		private Entry(V value, long expiresAt) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
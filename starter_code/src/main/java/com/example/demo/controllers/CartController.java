@@ -1,25 +1,39 @@
 package com.example.demo.controllers;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.IntStream;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.example.demo.model.persistence.Cart;
 import com.example.demo.model.persistence.Item;
-import com.example.demo.model.persistence.User;
-import com.example.demo.model.persistence.repositories.CartRepository;
-import com.example.demo.model.persistence.repositories.ItemRepository;
-import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.model.requests.CartLineOperation;
+import com.example.demo.model.requests.ModifyCartBatchRequest;
 import com.example.demo.model.requests.ModifyCartRequest;
+import com.example.demo.model.responses.CartOperationFailure;
+import com.example.demo.model.responses.CartResponse;
+import com.example.demo.model.responses.ModifyCartBatchResponse;
+import com.example.demo.security.UserPrincipal;
+import com.example.demo.service.CartService;
+import com.example.demo.service.ItemCatalog;
 
 @RestController
 @RequestMapping("/api/cart")
@@ -27,52 +41,169 @@ public class CartController {
 
 	private static final Logger log = LoggerFactory.getLogger(UserController.class);
 
-	@Autowired
-	private UserRepository userRepository;
+	static final int MAX_BATCH_OPERATIONS = 500;
 
 	@Autowired
-	private CartRepository cartRepository;
+	private CartService cartService;
 
 	@Autowired
-	private ItemRepository itemRepository;
+	private ItemCatalog itemCatalog;
+
+	/**
+	 * Reads the caller's own cart. The response carries a strong ETag covering the cart and the items on it;
+	 * a request whose If-None-Match still matches is answered with 304 from the version columns alone,
+	 * without loading the cart.
+	 */
+	@GetMapping
+	public ResponseEntity<CartResponse> getCart(@AuthenticationPrincipal UserPrincipal principal,
+			@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+		if(principal == null) {
+			return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+		}
+		if(ifNoneMatch != null) {
+			String currentTag = cartService.currentTag(principal);
+			if(currentTag != null && tagMatches(ifNoneMatch, currentTag)) {
+				return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(currentTag).build();
+			}
+		}
+		Cart cart = cartService.findCart(principal.getName(), principal);
+		if(cart == null) {
+			log.error("user was not found");
+			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+		}
+		return ResponseEntity.ok().eTag(cartService.tag(cart)).body(CartResponse.from(cart));
+	}
 
 	@PostMapping("/addToCart")
-	public ResponseEntity<Cart> addTocart(@RequestBody ModifyCartRequest request) {
-		User user = userRepository.findByUsername(request.getUsername());
-		if(user == null) {
+	public ResponseEntity<CartResponse> addTocart(@RequestBody ModifyCartRequest request,
+			@AuthenticationPrincipal UserPrincipal principal) {
+		Long cartId = cartService.findCartId(request.getUsername(), principal);
+		if(cartId == null) {
 			log.error("user was not found");
 			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
 		}
-		Optional<Item> item = itemRepository.findById(request.getItemId());
+		Optional<Item> item = itemCatalog.findById(request.getItemId());
 		if(!item.isPresent()) {
 			log.error("item was not found");
 			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
 		}
-		Cart cart = user.getCart();
-		IntStream.range(0, request.getQuantity())
-			.forEach(i -> cart.addItem(item.get()));
-		cartRepository.save(cart);
-		log.info("item was successfully added to cart of " + user.getUsername());
-		return ResponseEntity.ok(cart);
+		Cart saved;
+		try {
+			saved = cartService.update(cartId, c -> c.addItem(item.get(), request.getQuantity()));
+		} catch (OptimisticLockingFailureException e) {
+			return ResponseEntity.status(HttpStatus.CONFLICT).build();
+		}
+		if(saved == null) {
+			log.error("user was not found");
+			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+		}
+		log.info("item was successfully added to cart of " + request.getUsername());
+		return ResponseEntity.ok().eTag(cartService.tag(saved)).body(CartResponse.from(saved));
 	}
 
 	@PostMapping("/removeFromCart")
-	public ResponseEntity<Cart> removeFromcart(@RequestBody ModifyCartRequest request) {
-		User user = userRepository.findByUsername(request.getUsername());
-		if(user == null) {
+	public ResponseEntity<CartResponse> removeFromcart(@RequestBody ModifyCartRequest request,
+			@AuthenticationPrincipal UserPrincipal principal) {
+		Long cartId = cartService.findCartId(request.getUsername(), principal);
+		if(cartId == null) {
 			log.error("user was not found");
 			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
 		}
-		Optional<Item> item = itemRepository.findById(request.getItemId());
+		Optional<Item> item = itemCatalog.findById(request.getItemId());
 		if(!item.isPresent()) {
 			log.error("item was not found");
 			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
 		}
-		Cart cart = user.getCart();
-		IntStream.range(0, request.getQuantity())
-			.forEach(i -> cart.removeItem(item.get()));
-		cartRepository.save(cart);
-		log.info("item was successfully removed from cart of " + user.getUsername());
-		return ResponseEntity.ok(cart);
+		Cart saved;
+		try {
+			saved = cartService.update(cartId, c -> c.removeItem(item.get(), request.getQuantity()));
+		} catch (OptimisticLockingFailureException e) {
+			return ResponseEntity.status(HttpStatus.CONFLICT).build();
+		}
+		if(saved == null) {
+			log.error("user was not found");
+			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+		}
+		log.info("item was successfully removed from cart of " + request.getUsername());
+		return ResponseEntity.ok().eTag(cartService.tag(saved)).body(CartResponse.from(saved));
+	}
+
+	/**
+	 * Applies a list of add/remove operations with one item query and one cart save. Operations that
+	 * cannot be applied are reported back by index and do not fail the rest of the batch.
+	 */
+	@PostMapping("/modify")
+	public ResponseEntity<ModifyCartBatchResponse> modifyCart(@RequestBody ModifyCartBatchRequest request,
+			@AuthenticationPrincipal UserPrincipal principal) {
+		List<CartLineOperation> operations = request.getOperations() == null
+				? Collections.emptyList() : request.getOperations();
+		if(operations.size() > MAX_BATCH_OPERATIONS) {
+			log.error("cart batch of " + operations.size() + " operations exceeds the limit of " + MAX_BATCH_OPERATIONS);
+			return ResponseEntity.badRequest().build();
+		}
+		Long cartId = cartService.findCartId(request.getUsername(), principal);
+		if(cartId == null) {
+			log.error("user was not found");
+			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+		}
+		List<Long> itemIds = operations.stream()
+				.map(CartLineOperation::getItemId)
+				.distinct()
+				.collect(Collectors.toList());
+		Map<Long, Item> items = itemCatalog.findAllById(itemIds).stream()
+				.collect(Collectors.toMap(Item::getId, Function.identity()));
+		List<CartOperationFailure> failures = new ArrayList<>();
+		Cart saved;
+		try {
+			saved = cartService.update(cartId, c -> applyOperations(c, operations, items, failures));
+		} catch (OptimisticLockingFailureException e) {
+			return ResponseEntity.status(HttpStatus.CONFLICT).build();
+		}
+		if(saved == null) {
+			log.error("user was not found");
+			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+		}
+		log.info("cart of " + request.getUsername() + " was modified with " + (operations.size() - failures.size())
+				+ " operations, " + failures.size() + " failed");
+		return ResponseEntity.ok(new ModifyCartBatchResponse(CartResponse.from(saved), failures));
+	}
+
+	private static boolean tagMatches(String ifNoneMatch, String tag) {
+		for(String candidate : ifNoneMatch.split(",")) {
+			candidate = candidate.trim();
+			if(candidate.startsWith("W/")) {
+				candidate = candidate.substring(2);
+			}
+			if(candidate.equals("*") || candidate.equals(tag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Applies the batch to the given cart, collecting the operations that cannot be applied. Clears
+	 * earlier failures first because the cart service may call this again on a freshly loaded cart.
+	 */
+	private static void applyOperations(Cart cart, List<CartLineOperation> operations, Map<Long, Item> items,
+			List<CartOperationFailure> failures) {
+		failures.clear();
+		for(int i = 0; i < operations.size(); i++) {
+			CartLineOperation operation = operations.get(i);
+			Item item = items.get(operation.getItemId());
+			if(item == null) {
+				failures.add(new CartOperationFailure(i, operation.getItemId(), "item was not found"));
+			} else if(operation.getAction() == null) {
+				failures.add(new CartOperationFailure(i, operation.getItemId(), "action is required"));
+			} else if(operation.getQuantity() <= 0) {
+				failures.add(new CartOperationFailure(i, operation.getItemId(), "quantity must be positive"));
+			} else if(operation.getAction() == CartLineOperation.Action.ADD) {
+				cart.addItem(item, operation.getQuantity());
+			} else if(cart.getQuantity(item) == 0) {
+				failures.add(new CartOperationFailure(i, operation.getItemId(), "item is not in the cart"));
+			} else {
+				cart.removeItem(item, operation.getQuantity());
+			}
+		}
 	}
 }
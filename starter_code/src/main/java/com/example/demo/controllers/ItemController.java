@@ -1,40 +1,196 @@
 package com.example.demo.controllers;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.example.demo.model.persistence.Item;
 import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.example.demo.model.requests.ItemPageRequest;
+import com.example.demo.model.responses.ItemImportResult;
+import com.example.demo.model.responses.ItemLookup;
+import com.example.demo.model.responses.ItemPage;
+import com.example.demo.model.responses.ItemView;
+import com.example.demo.service.ItemCatalog;
+import com.example.demo.service.ItemImportService;
+import com.example.demo.service.ItemNameIndex;
+import com.example.demo.service.ItemTextIndex;
 
 @RestController
 @RequestMapping("/api/item")
 public class ItemController {
 
+	private static final Logger log = LoggerFactory.getLogger(ItemController.class);
+
+	public static final int MAX_IDS_PER_REQUEST = 100;
+
+	static final MediaType CSV = MediaType.parseMediaType("text/csv");
+
 	@Autowired
 	private ItemRepository itemRepository;
+
+	@Autowired
+	private ItemCatalog itemCatalog;
+
+	@Autowired
+	private ItemNameIndex itemNameIndex;
+
+	@Autowired
+	private ItemTextIndex itemTextIndex;
+
+	@Autowired
+	private ItemImportService itemImportService;
+
+	@Value("${item.import.enabled:false}")
+	private boolean importEnabled;
 	
+	/**
+	 * Items in id order, at most {@code size} of them. When more follow, the {@code Link} header points at the
+	 * next page; {@code /page} offers other sort orders and sparse fieldsets.
+	 */
 	@GetMapping
-	public ResponseEntity<List<Item>> getItems() {
-		return ResponseEntity.ok(itemRepository.findAll());
+	public ResponseEntity<List<ItemView>> getItems(@RequestParam(required = false) String after,
+			@RequestParam(defaultValue = "100") int size) {
+		ItemPageRequest request;
+		try {
+			request = ItemPageRequest.of("id", after, size, null);
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().build();
+		}
+		ItemPage page = page(request);
+		ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+		if (page.getNext() != null) {
+			response.header(HttpHeaders.LINK,
+					"</api/item?after=" + page.getNext() + "&size=" + request.getSize() + ">; rel=\"next\"");
+		}
+		return response.body(page.getItems());
+	}
+	
+	/**
+	 * Looks up several items at once, e.g. {@code ?ids=1,2,3}. The result has one entry per requested id, in
+	 * request order, with missing items marked as not found.
+	 */
+	@GetMapping(params = "ids")
+	public ResponseEntity<List<ItemLookup>> getItemsById(@RequestParam List<Long> ids) {
+		if (ids.isEmpty() || ids.size() > MAX_IDS_PER_REQUEST || ids.contains(null)) {
+			return ResponseEntity.badRequest().build();
+		}
+		Map<Long, Item> found = new HashMap<>();
+		for (Item item : itemCatalog.findAllById(new LinkedHashSet<>(ids))) {
+			found.put(item.getId(), item);
+		}
+		List<ItemLookup> lookups = new ArrayList<>(ids.size());
+		for (Long id : ids) {
+			Item item = found.get(id);
+			lookups.add(item == null ? ItemLookup.missing(id) : ItemLookup.found(item));
+		}
+		return ResponseEntity.ok(lookups);
+	}
+
+	/**
+	 * One page of items sorted by id, name or price. Pass the {@code next} cursor of a page as {@code after}
+	 * to get the following one; {@code fields} limits the properties returned, e.g. {@code id,name,price}.
+	 */
+	@GetMapping("/page")
+	public ResponseEntity<ItemPage> getItemPage(@RequestParam(defaultValue = "id") String sort,
+			@RequestParam(required = false) String after,
+			@RequestParam(defaultValue = "20") int size,
+			@RequestParam(required = false) String fields) {
+		ItemPageRequest request;
+		try {
+			request = ItemPageRequest.of(sort, after, size, fields);
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().build();
+		}
+		return ResponseEntity.ok(page(request));
 	}
 	
 	@GetMapping("/{id}")
 	public ResponseEntity<Item> getItemById(@PathVariable Long id) {
-		return ResponseEntity.of(itemRepository.findById(id));
+		return ResponseEntity.of(itemCatalog.findById(id));
 	}
 	
 	@GetMapping("/name/{name}")
 	public ResponseEntity<List<Item>> getItemsByName(@PathVariable String name) {
-		List<Item> items = itemRepository.findByName(name);
+		List<Item> items = itemCatalog.findByName(name);
 		return items == null || items.isEmpty() ? ResponseEntity.notFound().build()
 				: ResponseEntity.ok(items);
 			
 	}
-	
+
+	/**
+	 * Items whose name starts with the prefix, ignoring case, for autocompletion.
+	 */
+	@GetMapping("/search")
+	public ResponseEntity<List<ItemView>> searchItems(@RequestParam String prefix,
+			@RequestParam(defaultValue = "10") int limit) {
+		if (prefix.trim().isEmpty()) {
+			return ResponseEntity.badRequest().build();
+		}
+		return ResponseEntity.ok(itemNameIndex.search(prefix, limit));
+	}
+
+	/**
+	 * Items whose name or description contains any of the query's words, best match first.
+	 */
+	@GetMapping("/search/text")
+	public ResponseEntity<List<ItemView>> searchItemsByText(@RequestParam("q") String query,
+			@RequestParam(defaultValue = "10") int limit) {
+		if (query.trim().isEmpty()) {
+			return ResponseEntity.badRequest().build();
+		}
+		return ResponseEntity.ok(itemTextIndex.search(query, limit));
+	}
+
+	/**
+	 * Imports a CSV or newline delimited JSON feed of items from the request body as it arrives. Disabled
+	 * unless {@code item.import.enabled} is set, as any signed in user could otherwise rewrite the catalog.
+	 */
+	@PostMapping(path = "/import", consumes = { "text/csv", OrderController.NDJSON_VALUE })
+	public ResponseEntity<ItemImportResult> importItems(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+			InputStream body) {
+		if (!importEnabled) {
+			return ResponseEntity.notFound().build();
+		}
+		ItemImportService.Format format = CSV.isCompatibleWith(MediaType.parseMediaType(contentType))
+				? ItemImportService.Format.CSV : ItemImportService.Format.NDJSON;
+		try {
+			return ResponseEntity.ok(itemImportService.importItems(body, format));
+		} catch (IOException e) {
+			log.error("item import failed: " + e.getMessage());
+			return ResponseEntity.badRequest().build();
+		}
+	}
+
+	private ItemPage page(ItemPageRequest request) {
+		// one row more than asked for tells whether there is a next page
+		List<ItemView> rows = itemRepository.findPage(request, request.getSize() + 1);
+		boolean more = rows.size() > request.getSize();
+		List<ItemView> items = new ArrayList<>(Math.min(rows.size(), request.getSize()));
+		for (ItemView row : more ? rows.subList(0, request.getSize()) : rows) {
+			items.add(request.select(row));
+		}
+		String next = more ? request.cursorAfter(rows.get(request.getSize() - 1)) : null;
+		return new ItemPage(items, next);
+	}
+
 }
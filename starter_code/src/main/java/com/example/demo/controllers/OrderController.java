@@ -5,19 +5,33 @@ import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.example.demo.model.persistence.Cart;
-import com.example.demo.model.persistence.User;
 import com.example.demo.model.persistence.UserOrder;
-import com.example.demo.model.persistence.repositories.CartRepository;
 import com.example.demo.model.persistence.repositories.OrderRepository;
 import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.model.responses.OrderHistoryPage;
+import com.example.demo.model.responses.OrderIntakeStatus;
+import com.example.demo.model.responses.OrderSummaryResponse;
+import com.example.demo.security.UserPrincipal;
+import com.example.demo.service.CartService;
+import com.example.demo.service.IdempotencyStore;
+import com.example.demo.service.OrderHistoryService;
+import com.example.demo.service.OrderIntakeService;
+import com.example.demo.service.OrderSummaryService;
 
 @RestController
 @RequestMapping("/api/order")
@@ -25,34 +39,167 @@ public class OrderController {
 
 	private static final Logger log = LoggerFactory.getLogger(UserController.class);
 
+	static final String NDJSON_VALUE = "application/x-ndjson";
+
+	static final MediaType NDJSON = MediaType.parseMediaType(NDJSON_VALUE);
+
 	@Autowired
 	private UserRepository userRepository;
 
+	@Autowired
+	private CartService cartService;
+
 	@Autowired
 	private OrderRepository orderRepository;
 
+	@Autowired
+	private OrderIntakeService orderIntakeService;
+
+	@Autowired
+	private OrderHistoryService orderHistoryService;
+
+	@Autowired
+	private OrderSummaryService orderSummaryService;
 
+	@Autowired
+	private IdempotencyStore idempotencyStore;
+
+	/**
+	 * Builds and saves an order from the cart. An authenticated client that sends an Idempotency-Key gets
+	 * the original response back when it retries with the same key, without the order being created again.
+	 * Keys belong to the caller's token, not to the username in the path, so one user can never be handed
+	 * another user's stored response.
+	 */
 	@PostMapping("/submit/{username}")
-	public ResponseEntity<UserOrder> submit(@PathVariable String username) {
-		User user = userRepository.findByUsername(username);
-		if(user == null) {
+	public ResponseEntity<UserOrder> submit(@PathVariable String username,
+			@AuthenticationPrincipal UserPrincipal principal,
+			@RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey) {
+		if(idempotencyKey == null || principal == null) {
+			return submitOrder(username, principal);
+		}
+		if(idempotencyKey.isEmpty() || idempotencyKey.length() > IdempotencyStore.MAX_KEY_LENGTH) {
+			log.error("invalid idempotency key");
+			return ResponseEntity.badRequest().build();
+		}
+		return idempotencyStore.execute(principal.getName(), idempotencyKey, () -> submitOrder(username, principal));
+	}
+
+	private ResponseEntity<UserOrder> submitOrder(String username, UserPrincipal principal) {
+		Cart cart = cartService.findCart(username, principal);
+		if(cart == null) {
 			log.error("user was not found");
 			return ResponseEntity.notFound().build();
 		}
-		UserOrder order = UserOrder.createFromCart(user.getCart());
-		orderRepository.save(order);
-		log.info("oder was successfully submitted by user " + user.getUsername());
+		// buffered cart changes must reach the database before the order is built from the cart
+		UserOrder order = orderSummaryService.save(UserOrder.createFromCart(cartService.flush(cart)));
+		log.info("oder was successfully submitted by user " + username);
 		return ResponseEntity.ok(order);
 	}
 
+	/**
+	 * Validates the cart and queues the order, answering with a reference to poll instead of waiting
+	 * for the order to be written.
+	 */
+	@PostMapping("/intake/{username}")
+	public ResponseEntity<OrderIntakeStatus> submitForIntake(@PathVariable String username,
+			@AuthenticationPrincipal UserPrincipal principal) {
+		Cart cart = cartService.findCart(username, principal);
+		if(cart == null) {
+			log.error("user was not found");
+			return ResponseEntity.notFound().build();
+		}
+		if(cart.getLines().isEmpty()) {
+			log.error("cart of " + username + " is empty");
+			return ResponseEntity.badRequest().build();
+		}
+		OrderIntakeStatus status = orderIntakeService.accept(UserOrder.createFromCart(cartService.flush(cart)));
+		if(status == null) {
+			log.warn("order intake queue is full. Unable to accept order of " + username);
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+					.header(HttpHeaders.RETRY_AFTER, "1").build();
+		}
+		log.info("order was accepted for " + username + " with reference " + status.getReference());
+		return ResponseEntity.accepted().body(status);
+	}
+
+	@GetMapping("/intake/status/{reference}")
+	public ResponseEntity<OrderIntakeStatus> getIntakeStatus(@PathVariable String reference,
+			@AuthenticationPrincipal UserPrincipal principal) {
+		OrderIntakeStatus status = orderIntakeService.status(reference);
+		// someone else's reference is reported the same as an unknown one
+		if(status == null || (principal != null && !principal.isUser(status.getUsername()))) {
+			log.error("order reference " + reference + " was not found");
+			return ResponseEntity.notFound().build();
+		}
+		return ResponseEntity.ok(status);
+	}
+
 	@GetMapping("/history/{username}")
-	public ResponseEntity<List<UserOrder>> getOrdersForUser(@PathVariable String username) {
-		User user = userRepository.findByUsername(username);
-		if(user == null) {
+	public ResponseEntity<List<UserOrder>> getOrdersForUser(@PathVariable String username,
+			@AuthenticationPrincipal UserPrincipal principal) {
+		if(principal != null && principal.getUserId() != null && principal.isUser(username)) {
+			log.info("order history was found for " + username);
+			return ResponseEntity.ok(orderRepository.findWithLinesByUserId(principal.getUserId()));
+		}
+		Long userId = userRepository.findIdByUsername(username);
+		if(userId == null) {
+			log.error("user was not found");
+			return ResponseEntity.notFound().build();
+		}
+		log.info("order history was found for " + username);
+		return ResponseEntity.ok(orderRepository.findWithLinesByUserId(userId));
+	}
+
+	/**
+	 * Pages through the user's orders by id. Pass the {@code next} value of a page as {@code after} to
+	 * get the following one.
+	 */
+	@GetMapping("/history/{username}/page")
+	public ResponseEntity<OrderHistoryPage> getOrderPageForUser(@PathVariable String username,
+			@RequestParam(defaultValue = "0") long after, @RequestParam(defaultValue = "20") int size,
+			@AuthenticationPrincipal UserPrincipal principal) {
+		Long userId = findUserId(username, principal);
+		if(userId == null) {
+			log.error("user was not found");
+			return ResponseEntity.notFound().build();
+		}
+		return ResponseEntity.ok(orderHistoryService.page(userId, after, size));
+	}
+
+	/**
+	 * Streams the user's whole order history as newline delimited JSON in constant memory.
+	 */
+	@GetMapping("/history/{username}/export")
+	public ResponseEntity<StreamingResponseBody> exportOrdersForUser(@PathVariable String username,
+			@AuthenticationPrincipal UserPrincipal principal) {
+		Long userId = findUserId(username, principal);
+		if(userId == null) {
 			log.error("user was not found");
 			return ResponseEntity.notFound().build();
 		}
-		log.info("order history was found for " + user.getUsername());
-		return ResponseEntity.ok(orderRepository.findByUser(user));
+		log.info("order history export started for " + username);
+		return ResponseEntity.ok().contentType(NDJSON)
+				.body(out -> orderHistoryService.export(userId, out));
+	}
+
+	/**
+	 * Lifetime order count, spend and favourite items of the user, read from one maintained row.
+	 */
+	@GetMapping("/summary/{username}")
+	public ResponseEntity<OrderSummaryResponse> getOrderSummaryForUser(@PathVariable String username,
+			@AuthenticationPrincipal UserPrincipal principal) {
+		Long userId = findUserId(username, principal);
+		if(userId == null) {
+			log.error("user was not found");
+			return ResponseEntity.notFound().build();
+		}
+		return ResponseEntity.ok(OrderSummaryResponse.from(orderSummaryService.find(userId)));
+	}
+
+	private Long findUserId(String username, UserPrincipal principal) {
+		if(principal != null && principal.getUserId() != null && principal.isUser(username)) {
+			return principal.getUserId();
+		}
+		return userRepository.findIdByUsername(username);
 	}
 }
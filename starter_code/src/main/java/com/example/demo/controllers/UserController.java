@@ -5,9 +5,13 @@ import com.example.demo.model.persistence.User;
 import com.example.demo.model.persistence.repositories.CartRepository;
 import com.example.demo.model.persistence.repositories.UserRepository;
 import com.example.demo.model.requests.CreateUserRequest;
+import com.example.demo.security.PasswordHashingBusyException;
+import com.example.demo.security.UserDetailsCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.web.bind.annotation.*;
@@ -27,6 +31,9 @@ public class UserController {
 	@Autowired
 	private BCryptPasswordEncoder bCryptPasswordEncoder;
 
+	@Autowired
+	private UserDetailsCache userDetailsCache;
+
 	@GetMapping("/id/{id}")
 	public ResponseEntity<User> findById(@PathVariable Long id) {
 		return ResponseEntity.of(userRepository.findById(id));
@@ -51,8 +58,16 @@ public class UserController {
 			log.error("Either length is less than 7 or pass and conf pass do not match. Unable to create with the name " + user.getUsername());
 			return ResponseEntity.badRequest().build();
 		}
-		user.setPassword(bCryptPasswordEncoder.encode(createUserRequest.getPassword()));
+		try {
+			user.setPassword(bCryptPasswordEncoder.encode(createUserRequest.getPassword()));
+		} catch (PasswordHashingBusyException e) {
+			log.warn("password hashing queue is full. Unable to create with the name " + user.getUsername());
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+					.header(HttpHeaders.RETRY_AFTER, "1").build();
+		}
 		userRepository.save(user);
+		// a failed login before signup may have cached this name as unknown
+		userDetailsCache.removeUserFromCache(user.getUsername());
 		log.info("user was successfully created with the name " + user.getUsername());
 		return ResponseEntity.ok(user);
 	}
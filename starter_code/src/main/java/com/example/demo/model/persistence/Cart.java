@@ -2,20 +2,28 @@ package com.example.demo.model.persistence;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
+import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
-import javax.persistence.ManyToMany;
+import javax.persistence.MapKey;
 import javax.persistence.OneToMany;
 import javax.persistence.OneToOne;
+import javax.persistence.OrderBy;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
+import javax.persistence.Transient;
+import javax.persistence.Version;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 @Entity
@@ -23,15 +31,18 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 public class Cart {
 	
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cart_seq")
+	@SequenceGenerator(name = "cart_seq", sequenceName = "cart_seq", allocationSize = 50)
 	@JsonProperty
 	@Column
 	private Long id;
 	
-	@ManyToMany
-	@JsonProperty
-	@Column
-    private List<Item> items;
+	// one row per distinct item, keyed by item id so add and remove are a single map lookup
+	@OneToMany(mappedBy = "cart", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.EAGER)
+	@MapKey(name = "itemId")
+	@OrderBy("id")
+	@JsonIgnore
+	private Map<Long, CartLine> lines = new LinkedHashMap<>();
 	
 	@OneToOne(mappedBy = "cart")
 	@JsonProperty
@@ -40,6 +51,16 @@ public class Cart {
 	@Column
 	@JsonProperty
 	private BigDecimal total;
+
+	// bumped on every save, so concurrent read-modify-write updates fail instead of overwriting each other
+	@Version
+	@JsonIgnore
+	private Long version;
+
+	// changes held in memory on top of version, see WriteBehindCartStore
+	@Transient
+	@JsonIgnore
+	private int unflushedChanges;
 	
 	public BigDecimal getTotal() {
 		return total;
@@ -65,33 +86,99 @@ public class Cart {
 		this.id = id;
 	}
 
+	public Long getVersion() {
+		return version;
+	}
+
+	public int getUnflushedChanges() {
+		return unflushedChanges;
+	}
+
+	public void markUnflushedChange() {
+		unflushedChanges++;
+	}
+
+	public Map<Long, CartLine> getLines() {
+		return lines;
+	}
+
+	public int getQuantity(Item item) {
+		CartLine line = lines.get(item.getId());
+		return line == null ? 0 : line.getQuantity();
+	}
+
+	/**
+	 * Expands the cart lines into one entry per unit, the shape the cart has always been serialised in.
+	 */
+	@JsonProperty("items")
 	public List<Item> getItems() {
+		List<Item> items = new ArrayList<>();
+		for (CartLine line : lines.values()) {
+			items.addAll(Collections.nCopies(line.getQuantity(), line.getItem()));
+		}
 		return items;
 	}
-
-	public void setItems(List<Item> items) {
-		this.items = items;
+	
+	/**
+	 * Detached copy with its own cart lines, for callers that publish a cart and must not change it afterwards.
+	 */
+	public Cart copy() {
+		Cart copy = new Cart();
+		copy.id = id;
+		copy.version = version;
+		copy.user = user;
+		copy.total = total;
+		copy.unflushedChanges = unflushedChanges;
+		for (CartLine line : lines.values()) {
+			CartLine lineCopy = new CartLine(copy, line.getItem());
+			lineCopy.setId(line.getId());
+			lineCopy.setQuantity(line.getQuantity());
+			copy.lines.put(lineCopy.getItemId(), lineCopy);
+		}
+		return copy;
 	}
 	
 	public void addItem(Item item) {
-		if(items == null) {
-			items = new ArrayList<>();
+		addItem(item, 1);
+	}
+
+	public void addItem(Item item, int quantity) {
+		if(quantity <= 0) {
+			return;
+		}
+		CartLine line = lines.get(item.getId());
+		if(line == null) {
+			line = new CartLine(this, item);
+			lines.put(item.getId(), line);
 		}
-		items.add(item);
+		line.setQuantity(line.getQuantity() + quantity);
 		if(total == null) {
 			total = new BigDecimal(0);
 		}
-		total = total.add(item.getPrice());
+		total = total.add(item.getPrice().multiply(BigDecimal.valueOf(quantity)));
 	}
 	
 	public void removeItem(Item item) {
-		if(items == null) {
-			items = new ArrayList<>();
+		removeItem(item, 1);
+	}
+
+	/**
+	 * Removes up to {@code quantity} units; removing more than the cart holds empties the line.
+	 */
+	public void removeItem(Item item, int quantity) {
+		CartLine line = lines.get(item.getId());
+		if(line == null || quantity <= 0) {
+			return;
+		}
+		int removed = Math.min(quantity, line.getQuantity());
+		if(removed == line.getQuantity()) {
+			lines.remove(item.getId());
+		} else {
+			line.setQuantity(line.getQuantity() - removed);
 		}
-		items.remove(item);
 		if(total == null) {
 			total = new BigDecimal(0);
 		}
-		total = total.subtract(item.getPrice());
+		total = total.subtract(item.getPrice().multiply(BigDecimal.valueOf(removed)));
 	}
 }
@@ -2,24 +2,37 @@ package com.example.demo.model.persistence;
 
 import java.math.BigDecimal;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
+import javax.persistence.Version;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 @Entity
-@Table(name = "item")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "item")
+// keyset pages sorted by name or price seek on these instead of sorting the table
+@Table(name = "item", indexes = {
+		@Index(name = "idx_item_name_id", columnList = "name, id"),
+		@Index(name = "idx_item_price_id", columnList = "price, id") })
 public class Item {
 
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "item_seq")
+	@SequenceGenerator(name = "item_seq", sequenceName = "item_seq", allocationSize = 50)
 	@JsonProperty
 	private Long id;
 	
@@ -34,6 +47,11 @@ public class Item {
 	@Column(nullable = false)
 	@JsonProperty
 	private String description;
+
+	// bumped on every update, so the entity tag of a cart holding the item changes with it
+	@Version
+	@JsonIgnore
+	private Long version;
 	
 	@Override
 	public int hashCode() {
@@ -91,6 +109,10 @@ public class Item {
 	public void setDescription(String description) {
 		this.description = description;
 	}
+
+	public Long getVersion() {
+		return version;
+	}
 	
 	
 	
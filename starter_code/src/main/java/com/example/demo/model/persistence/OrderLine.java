@@ -0,0 +1,62 @@
+package com.example.demo.model.persistence;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * One distinct item of an order with the price paid per unit, kept in cents so later catalog price
+ * changes do not alter past orders.
+ */
+@Embeddable
+public class OrderLine {
+
+	@Column(name = "item_id", nullable = false)
+	@JsonProperty
+	private long itemId;
+
+	@Column(nullable = false)
+	@JsonProperty
+	private int quantity;
+
+	@Column(name = "unit_price_cents", nullable = false)
+	@JsonProperty
+	private long unitPriceCents;
+
+	protected OrderLine() {
+	}
+
+	public OrderLine(long itemId, int quantity, long unitPriceCents) {
+		this.itemId = itemId;
+		this.quantity = quantity;
+		this.unitPriceCents = unitPriceCents;
+	}
+
+	public static OrderLine fromCartLine(CartLine line) {
+		return new OrderLine(line.getItem().getId(), line.getQuantity(), toCents(line.getItem().getPrice()));
+	}
+
+	public long getItemId() {
+		return itemId;
+	}
+
+	public int getQuantity() {
+		return quantity;
+	}
+
+	public long getUnitPriceCents() {
+		return unitPriceCents;
+	}
+
+	public long getTotalCents() {
+		return unitPriceCents * quantity;
+	}
+
+	static long toCents(BigDecimal price) {
+		return price.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+	}
+}
@@ -1,21 +1,25 @@
 package com.example.demo.model.persistence;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
-import javax.persistence.CascadeType;
+import javax.persistence.CollectionTable;
 import javax.persistence.Column;
+import javax.persistence.ElementCollection;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
-import javax.persistence.JoinTable;
-import javax.persistence.ManyToMany;
 import javax.persistence.ManyToOne;
+import javax.persistence.OrderColumn;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.BatchSize;
+
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 @Entity
@@ -23,15 +27,19 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 public class UserOrder {
 
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_order_seq")
+	@SequenceGenerator(name = "user_order_seq", sequenceName = "user_order_seq", allocationSize = 50)
 	@JsonProperty
 	@Column
 	private Long id;
 	
-	@ManyToMany(cascade = CascadeType.ALL)
+	// one row per distinct item, lines of up to 100 orders are loaded together
+	@ElementCollection(fetch = FetchType.EAGER)
+	@CollectionTable(name = "user_order_line", joinColumns = @JoinColumn(name = "order_id"))
+	@OrderColumn(name = "line_index")
+	@BatchSize(size = 100)
 	@JsonProperty
-	@Column
-    private List<Item> items;
+	private List<OrderLine> lines = new ArrayList<>();
 	
 	@ManyToOne
 	@JoinColumn(name="user_id", nullable = false, referencedColumnName = "id")
@@ -50,12 +58,12 @@ public class UserOrder {
 		this.id = id;
 	}
 
-	public List<Item> getItems() {
-		return items;
+	public List<OrderLine> getLines() {
+		return lines;
 	}
 
-	public void setItems(List<Item> items) {
-		this.items = items;
+	public void setLines(List<OrderLine> lines) {
+		this.lines = lines;
 	}
 
 	public User getUser() {
@@ -74,10 +82,18 @@ public class UserOrder {
 		this.total = total;
 	}
 
+	/**
+	 * Captures the cart's lines at their current prices. The total is summed from those same prices.
+	 */
 	public static UserOrder createFromCart(Cart cart) {
 		UserOrder order = new UserOrder();
-		order.setItems(cart.getItems().stream().collect(Collectors.toList()));
-		order.setTotal(cart.getTotal());
+		long totalCents = 0;
+		for (CartLine cartLine : cart.getLines().values()) {
+			OrderLine line = OrderLine.fromCartLine(cartLine);
+			order.lines.add(line);
+			totalCents += line.getTotalCents();
+		}
+		order.setTotal(BigDecimal.valueOf(totalCents, 2));
 		order.setUser(cart.getUser());
 		return order;
 	}
@@ -0,0 +1,81 @@
+package com.example.demo.model.persistence;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.persistence.CollectionTable;
+import javax.persistence.Column;
+import javax.persistence.ElementCollection;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.MapKeyColumn;
+import javax.persistence.Table;
+
+/**
+ * Running totals of a user's orders, updated together with every order so account pages do not have
+ * to add up the history.
+ */
+@Entity
+@Table(name = "user_order_summary")
+public class UserOrderSummary {
+
+	@Id
+	@Column(name = "user_id")
+	private Long userId;
+
+	@Column(nullable = false)
+	private long orderCount;
+
+	@Column(nullable = false)
+	private long totalSpendCents;
+
+	// units bought per item id
+	@ElementCollection(fetch = FetchType.EAGER)
+	@CollectionTable(name = "user_order_summary_item", joinColumns = @JoinColumn(name = "user_id"))
+	@MapKeyColumn(name = "item_id")
+	@Column(name = "quantity", nullable = false)
+	private Map<Long, Long> itemQuantities = new HashMap<>();
+
+	protected UserOrderSummary() {
+	}
+
+	public UserOrderSummary(Long userId) {
+		this.userId = userId;
+	}
+
+	public Long getUserId() {
+		return userId;
+	}
+
+	public long getOrderCount() {
+		return orderCount;
+	}
+
+	public long getTotalSpendCents() {
+		return totalSpendCents;
+	}
+
+	public Map<Long, Long> getItemQuantities() {
+		return itemQuantities;
+	}
+
+	public void add(UserOrder order) {
+		orderCount++;
+		for (OrderLine line : order.getLines()) {
+			totalSpendCents += line.getTotalCents();
+			itemQuantities.merge(line.getItemId(), (long) line.getQuantity(), Long::sum);
+		}
+	}
+
+	/**
+	 * Replaces the totals with ones recomputed from the order tables.
+	 */
+	public void reset(long orderCount, long totalSpendCents, Map<Long, Long> itemQuantities) {
+		this.orderCount = orderCount;
+		this.totalSpendCents = totalSpendCents;
+		this.itemQuantities.clear();
+		this.itemQuantities.putAll(itemQuantities);
+	}
+}
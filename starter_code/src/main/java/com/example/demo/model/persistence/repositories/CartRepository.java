@@ -1,10 +1,44 @@
 package com.example.demo.model.persistence.repositories;
 
+import java.util.Optional;
+
+import javax.persistence.QueryHint;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import com.example.demo.model.persistence.Cart;
 import com.example.demo.model.persistence.User;
 
+import static org.hibernate.jpa.QueryHints.HINT_PASS_DISTINCT_THROUGH;
+
 public interface CartRepository extends JpaRepository<Cart, Long> {
 	Cart findByUser(User user);
+
+	/**
+	 * What the cart's entity tag is made of: its own version and the sum of the versions of the items on
+	 * its lines.
+	 */
+	interface TagState {
+		Long getVersion();
+
+		Long getItemVersions();
+	}
+
+	/**
+	 * The cart's tag state in one statement, without loading the cart; {@code null} when there is no such cart.
+	 */
+	@Query("select c.version as version, coalesce(sum(i.version), 0) as itemVersions from Cart c "
+			+ "left join c.lines l left join l.item i where c.id = :id group by c.id, c.version")
+	TagState findTagStateById(@Param("id") long id);
+
+	/**
+	 * The cart with its user, its lines and their items, in one statement.
+	 */
+	@QueryHints(@QueryHint(name = HINT_PASS_DISTINCT_THROUGH, value = "false"))
+	@Query("select distinct c from Cart c left join fetch c.user "
+			+ "left join fetch c.lines l left join fetch l.item where c.id = :id")
+	Optional<Cart> findWithLinesById(@Param("id") long id);
 }
@@ -1,12 +1,43 @@
 package com.example.demo.model.persistence.repositories;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import com.example.demo.model.persistence.Item;
+import com.example.demo.model.responses.ItemView;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
-public interface ItemRepository extends JpaRepository<Item, Long> {
+public interface ItemRepository extends JpaRepository<Item, Long>, ItemRepositoryCustom {
 	public List<Item> findByName(String name);
 
+	/**
+	 * Id, name and price of every item, without loading descriptions or managed entities. Must be consumed,
+	 * and closed, inside a transaction.
+	 */
+	@QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+	@Query("select new com.example.demo.model.responses.ItemView(i.id, i.name, i.price) from Item i")
+	Stream<ItemView> streamViews();
+
+	@Query("select new com.example.demo.model.responses.ItemView(i.id, i.name, i.price) from Item i where i.id in :ids")
+	List<ItemView> findViewsByIdIn(@Param("ids") Collection<Long> ids);
+
+	/**
+	 * Like {@link #streamViews()}, with descriptions.
+	 */
+	@QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+	@Query("select new com.example.demo.model.responses.ItemView(i.id, i.name, i.price, i.description) from Item i")
+	Stream<ItemView> streamViewsWithDescription();
+
+	@Query("select new com.example.demo.model.responses.ItemView(i.id, i.name, i.price, i.description) "
+			+ "from Item i where i.id in :ids")
+	List<ItemView> findViewsWithDescriptionByIdIn(@Param("ids") Collection<Long> ids);
 }
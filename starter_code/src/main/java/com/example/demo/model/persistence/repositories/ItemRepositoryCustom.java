@@ -0,0 +1,17 @@
+package com.example.demo.model.persistence.repositories;
+
+import java.util.List;
+
+import com.example.demo.model.requests.ItemPageRequest;
+import com.example.demo.model.responses.ItemView;
+
+public interface ItemRepositoryCustom {
+
+	/**
+	 * Reads one page of items in sort order after the request's cursor. Only the requested columns are
+	 * selected, plus the id and sort column the next cursor is built from.
+	 *
+	 * @param limit rows to read, which may be more than the page size to look ahead
+	 */
+	List<ItemView> findPage(ItemPageRequest request, int limit);
+}
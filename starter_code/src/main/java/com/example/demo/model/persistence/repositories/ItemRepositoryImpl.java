@@ -0,0 +1,80 @@
+package com.example.demo.model.persistence.repositories;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.requests.ItemPageRequest;
+import com.example.demo.model.requests.ItemPageRequest.Sort;
+import com.example.demo.model.responses.ItemView;
+
+/**
+ * Keyset pagination over items with a column list chosen per request, so pages without descriptions never
+ * read the description column.
+ */
+public class ItemRepositoryImpl implements ItemRepositoryCustom {
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Override
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public List<ItemView> findPage(ItemPageRequest request, int limit) {
+		CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Tuple> query = builder.createTupleQuery();
+		Root<Item> item = query.from(Item.class);
+		Sort sort = request.getSort();
+		Path<Long> id = item.get("id");
+		Path key = item.get(sort.getAttribute());
+
+		// the id and sort key are always needed for the next cursor
+		Set<String> columns = new HashSet<>(request.getFields());
+		columns.add("id");
+		columns.add(sort.getAttribute());
+		List<Selection<?>> selections = new ArrayList<>();
+		for (String field : ItemPageRequest.FIELDS) {
+			if (columns.contains(field)) {
+				selections.add(item.get(field).alias(field));
+			}
+		}
+		query.multiselect(selections);
+
+		if (request.getAfterId() != null) {
+			if (sort == Sort.ID) {
+				query.where(builder.greaterThan(id, request.getAfterId()));
+			} else {
+				Comparable after = request.getAfterValue();
+				query.where(builder.or(
+						builder.greaterThan(key, after),
+						builder.and(builder.equal(key, after), builder.greaterThan(id, request.getAfterId()))));
+			}
+		}
+		if (sort == Sort.ID) {
+			query.orderBy(builder.asc(id));
+		} else {
+			query.orderBy(builder.asc(key), builder.asc(id));
+		}
+
+		List<ItemView> items = new ArrayList<>();
+		for (Tuple row : entityManager.createQuery(query).setMaxResults(limit).getResultList()) {
+			items.add(new ItemView(
+					row.get("id", Long.class),
+					columns.contains("name") ? row.get("name", String.class) : null,
+					columns.contains("price") ? row.get("price", BigDecimal.class) : null,
+					columns.contains("description") ? row.get("description", String.class) : null));
+		}
+		return items;
+	}
+}
@@ -1,12 +1,69 @@
 package com.example.demo.model.persistence.repositories;
 
+import java.util.Collection;
 import java.util.List;
 
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import com.example.demo.model.persistence.User;
 import com.example.demo.model.persistence.UserOrder;
 
+import static org.hibernate.jpa.QueryHints.HINT_PASS_DISTINCT_THROUGH;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
 public interface OrderRepository extends JpaRepository<UserOrder, Long> {
 	List<UserOrder> findByUser(User user);
+
+	List<UserOrder> findByUserId(long userId);
+
+	/**
+	 * The user's orders with their lines and user, in one statement however many orders there are.
+	 */
+	@QueryHints(@QueryHint(name = HINT_PASS_DISTINCT_THROUGH, value = "false"))
+	@Query("select distinct o from UserOrder o join fetch o.user left join fetch o.lines "
+			+ "where o.user.id = :userId order by o.id")
+	List<UserOrder> findWithLinesByUserId(@Param("userId") long userId);
+
+	List<UserOrder> findByUserIdAndIdGreaterThanOrderByIdAsc(long userId, long afterId, Pageable pageable);
+
+	/**
+	 * Ids of the user's orders after the given id, in id order; the keyset half of an export page.
+	 */
+	@Query("select o.id from UserOrder o where o.user.id = :userId and o.id > :afterId order by o.id")
+	List<Long> findIdsByUserIdAfter(@Param("userId") long userId, @Param("afterId") long afterId,
+			Pageable pageable);
+
+	/**
+	 * The given orders with their lines and user in one statement, in id order. Loaded read-only, for
+	 * writing out only.
+	 */
+	@QueryHints({
+			@QueryHint(name = HINT_PASS_DISTINCT_THROUGH, value = "false"),
+			@QueryHint(name = HINT_READONLY, value = "true")
+	})
+	@Query("select distinct o from UserOrder o join fetch o.user left join fetch o.lines "
+			+ "where o.id in :ids order by o.id")
+	List<UserOrder> findWithLinesByIdIn(@Param("ids") Collection<Long> ids);
+
+	@Query("select distinct o.user.id from UserOrder o order by o.user.id")
+	List<Long> findUserIdsWithOrders();
+
+	/**
+	 * @return rows of user id and order count
+	 */
+	@Query("select o.user.id, count(o) from UserOrder o where o.user.id in :userIds group by o.user.id")
+	List<Object[]> countByUserIds(@Param("userIds") Collection<Long> userIds);
+
+	/**
+	 * @return rows of user id, item id, units bought and amount spent in cents
+	 */
+	@Query("select o.user.id, l.itemId, sum(l.quantity), sum(l.quantity * l.unitPriceCents) "
+			+ "from UserOrder o join o.lines l where o.user.id in :userIds group by o.user.id, l.itemId")
+	List<Object[]> sumLinesByUserIds(@Param("userIds") Collection<Long> userIds);
 }
@@ -0,0 +1,38 @@
+package com.example.demo.model.persistence.repositories;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import javax.persistence.LockModeType;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.example.demo.model.persistence.UserOrderSummary;
+
+public interface UserOrderSummaryRepository extends JpaRepository<UserOrderSummary, Long> {
+
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("select s from UserOrderSummary s where s.userId = :userId")
+	Optional<UserOrderSummary> findForUpdate(@Param("userId") long userId);
+
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("select s from UserOrderSummary s where s.userId in :userIds order by s.userId")
+	List<UserOrderSummary> findAllForUpdate(@Param("userIds") Collection<Long> userIds);
+
+	@Query("select s.userId from UserOrderSummary s order by s.userId")
+	List<Long> findAllUserIds();
+
+	/**
+	 * Inserts an empty summary. Unlike {@code save}, which merges an entity with an assigned id, this never
+	 * overwrites a row another transaction has created meanwhile; it fails on the duplicate key instead.
+	 */
+	@Modifying
+	@Query(value = "insert into user_order_summary (user_id, order_count, total_spend_cents) values (:userId, 0, 0)",
+			nativeQuery = true)
+	int insertEmpty(@Param("userId") long userId);
+}
@@ -1,9 +1,43 @@
 package com.example.demo.model.persistence.repositories;
 
+import javax.persistence.QueryHint;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import com.example.demo.model.persistence.User;
 
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_CACHE_REGION;
+import static org.hibernate.jpa.QueryHints.HINT_PASS_DISTINCT_THROUGH;
+
 public interface UserRepository extends JpaRepository<User, Long> {
 	User findByUsername(String username);
+
+	/**
+	 * The user with their cart, its lines and their items, in one statement.
+	 */
+	@QueryHints(@QueryHint(name = HINT_PASS_DISTINCT_THROUGH, value = "false"))
+	@Query("select distinct u from User u left join fetch u.cart c left join fetch c.user "
+			+ "left join fetch c.lines l left join fetch l.item where u.username = :username")
+	User findWithCartByUsername(@Param("username") String username);
+
+	/**
+	 * For read paths that only need to know who the user is, without loading the user and their cart.
+	 * Results are kept in the query cache until the user table next changes.
+	 */
+	@QueryHints({
+			@QueryHint(name = HINT_CACHEABLE, value = "true"),
+			@QueryHint(name = HINT_CACHE_REGION, value = "user-id-by-username")
+	})
+	@Query("select u.id from User u where u.username = :username")
+	Long findIdByUsername(@Param("username") String username);
+
+	/**
+	 * For cart updates, which load the cart themselves once they hold the cart's lock.
+	 */
+	@Query("select u.cart.id from User u where u.username = :username")
+	Long findCartIdByUsername(@Param("username") String username);
 }
@@ -0,0 +1,151 @@
+package com.example.demo.model.requests;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import com.example.demo.model.responses.ItemView;
+
+/**
+ * A page of the item listing: the sort key, the cursor of the last item already seen, the page size and
+ * the fields to return. Cursors are opaque to clients; they carry the sort value and id of the last item
+ * of the previous page.
+ */
+public class ItemPageRequest {
+
+	public static final int MAX_PAGE_SIZE = 100;
+
+	public static final List<String> FIELDS = Collections.unmodifiableList(
+			Arrays.asList("id", "name", "price", "description"));
+
+	public enum Sort {
+		ID("id"), NAME("name"), PRICE("price");
+
+		private final String attribute;
+
+		Sort(String attribute) {
+			this.attribute = attribute;
+		}
+
+		public String getAttribute() {
+			return attribute;
+		}
+
+		private String format(ItemView item) {
+			switch (this) {
+			case NAME:
+				return item.getName();
+			case PRICE:
+				return item.getPrice().toPlainString();
+			default:
+				return String.valueOf(item.getId());
+			}
+		}
+
+		private Comparable<?> parse(String value) {
+			switch (this) {
+			case NAME:
+				return value;
+			case PRICE:
+				return new BigDecimal(value);
+			default:
+				return Long.valueOf(value);
+			}
+		}
+	}
+
+	private final Sort sort;
+
+	private final Comparable<?> afterValue;
+
+	private final Long afterId;
+
+	private final int size;
+
+	private final Set<String> fields;
+
+	private ItemPageRequest(Sort sort, Comparable<?> afterValue, Long afterId, int size, Set<String> fields) {
+		this.sort = sort;
+		this.afterValue = afterValue;
+		this.afterId = afterId;
+		this.size = size;
+		this.fields = fields;
+	}
+
+	/**
+	 * @param fields comma separated field names, {@code null} for all fields
+	 * @throws IllegalArgumentException for an unknown sort key or field, or a malformed cursor
+	 */
+	public static ItemPageRequest of(String sort, String after, int size, String fields) {
+		Sort sortKey = Sort.valueOf(sort.trim().toUpperCase(Locale.ROOT));
+		Comparable<?> afterValue = null;
+		Long afterId = null;
+		if (after != null && !after.isEmpty()) {
+			String cursor = new String(Base64.getUrlDecoder().decode(after), StandardCharsets.UTF_8);
+			int separator = cursor.lastIndexOf('\n');
+			if (separator < 0) {
+				throw new IllegalArgumentException("malformed cursor");
+			}
+			afterValue = sortKey.parse(cursor.substring(0, separator));
+			afterId = Long.valueOf(cursor.substring(separator + 1));
+		}
+		Set<String> selected = new LinkedHashSet<>(FIELDS);
+		if (fields != null && !fields.trim().isEmpty()) {
+			selected.clear();
+			for (String field : fields.split(",")) {
+				String name = field.trim();
+				if (!FIELDS.contains(name)) {
+					throw new IllegalArgumentException("unknown field " + name);
+				}
+				selected.add(name);
+			}
+		}
+		return new ItemPageRequest(sortKey, afterValue, afterId, Math.max(1, Math.min(size, MAX_PAGE_SIZE)),
+				Collections.unmodifiableSet(selected));
+	}
+
+	public Sort getSort() {
+		return sort;
+	}
+
+	public Comparable<?> getAfterValue() {
+		return afterValue;
+	}
+
+	public Long getAfterId() {
+		return afterId;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public Set<String> getFields() {
+		return fields;
+	}
+
+	/**
+	 * @return the cursor that continues after the given item
+	 */
+	public String cursorAfter(ItemView item) {
+		String cursor = sort.format(item) + "\n" + item.getId();
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @return the item with only the requested fields
+	 */
+	public ItemView select(ItemView item) {
+		return new ItemView(
+				fields.contains("id") ? item.getId() : null,
+				fields.contains("name") ? item.getName() : null,
+				fields.contains("price") ? item.getPrice() : null,
+				fields.contains("description") ? item.getDescription() : null);
+	}
+}
@@ -0,0 +1,30 @@
+package com.example.demo.model.requests;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class ModifyCartBatchRequest {
+
+	@JsonProperty
+	private String username;
+
+	@JsonProperty
+	private List<CartLineOperation> operations;
+
+	public String getUsername() {
+		return username;
+	}
+
+	public void setUsername(String username) {
+		this.username = username;
+	}
+
+	public List<CartLineOperation> getOperations() {
+		return operations;
+	}
+
+	public void setOperations(List<CartLineOperation> operations) {
+		this.operations = operations;
+	}
+}
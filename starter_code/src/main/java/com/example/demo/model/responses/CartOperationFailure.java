@@ -0,0 +1,36 @@
+package com.example.demo.model.responses;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * One rejected operation of a batch cart update, identified by its position in the request.
+ */
+public class CartOperationFailure {
+
+	@JsonProperty
+	private final int index;
+
+	@JsonProperty
+	private final long itemId;
+
+	@JsonProperty
+	private final String reason;
+
+	public CartOperationFailure(int index, long itemId, String reason) {
+		this.index = index;
+		this.itemId = itemId;
+		this.reason = reason;
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	public long getItemId() {
+		return itemId;
+	}
+
+	public String getReason() {
+		return reason;
+	}
+}
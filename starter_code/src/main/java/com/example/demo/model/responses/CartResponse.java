@@ -0,0 +1,91 @@
+package com.example.demo.model.responses;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.CartLine;
+import com.example.demo.model.persistence.Item;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * What the cart endpoints return: the cart id, one entry per cart line and the total. Built from plain
+ * values, so serialising it never walks the user or triggers a lazy load.
+ */
+public class CartResponse {
+
+	@JsonProperty
+	private final Long id;
+
+	@JsonProperty
+	private final List<Line> lines;
+
+	@JsonProperty
+	private final BigDecimal total;
+
+	public CartResponse(Long id, List<Line> lines, BigDecimal total) {
+		this.id = id;
+		this.lines = lines;
+		this.total = total;
+	}
+
+	public static CartResponse from(Cart cart) {
+		List<Line> lines = new ArrayList<>(cart.getLines().size());
+		for (CartLine line : cart.getLines().values()) {
+			Item item = line.getItem();
+			lines.add(new Line(item.getId(), item.getName(), item.getPrice(), line.getQuantity()));
+		}
+		return new CartResponse(cart.getId(), lines, cart.getTotal());
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	public List<Line> getLines() {
+		return lines;
+	}
+
+	public BigDecimal getTotal() {
+		return total;
+	}
+
+	public static class Line {
+
+		@JsonProperty
+		private final Long itemId;
+
+		@JsonProperty
+		private final String name;
+
+		@JsonProperty
+		private final BigDecimal price;
+
+		@JsonProperty
+		private final int quantity;
+
+		public Line(Long itemId, String name, BigDecimal price, int quantity) {
+			this.itemId = itemId;
+			this.name = name;
+			this.price = price;
+			this.quantity = quantity;
+		}
+
+		public Long getItemId() {
+			return itemId;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public BigDecimal getPrice() {
+			return price;
+		}
+
+		public int getQuantity() {
+			return quantity;
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package com.example.demo.model.responses;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * What an item import did, with its throughput.
+ */
+public class ItemImportResult {
+
+	@JsonProperty
+	private final long inserted;
+
+	@JsonProperty
+	private final long updated;
+
+	@JsonProperty
+	private final long rejected;
+
+	@JsonProperty
+	private final long elapsedMillis;
+
+	@JsonProperty
+	private final long rowsPerSecond;
+
+	public ItemImportResult(long inserted, long updated, long rejected, long elapsedMillis, long rowsPerSecond) {
+		this.inserted = inserted;
+		this.updated = updated;
+		this.rejected = rejected;
+		this.elapsedMillis = elapsedMillis;
+		this.rowsPerSecond = rowsPerSecond;
+	}
+
+	public long getInserted() {
+		return inserted;
+	}
+
+	public long getUpdated() {
+		return updated;
+	}
+
+	public long getRejected() {
+		return rejected;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	public long getRowsPerSecond() {
+		return rowsPerSecond;
+	}
+}
@@ -0,0 +1,47 @@
+package com.example.demo.model.responses;
+
+import com.example.demo.model.persistence.Item;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The result of looking up one id of a multi-get: the item, or {@code found: false} when there is none.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ItemLookup {
+
+	@JsonProperty
+	private final Long id;
+
+	@JsonProperty
+	private final boolean found;
+
+	@JsonProperty
+	private final Item item;
+
+	private ItemLookup(Long id, Item item) {
+		this.id = id;
+		this.found = item != null;
+		this.item = item;
+	}
+
+	public static ItemLookup found(Item item) {
+		return new ItemLookup(item.getId(), item);
+	}
+
+	public static ItemLookup missing(Long id) {
+		return new ItemLookup(id, null);
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	public boolean isFound() {
+		return found;
+	}
+
+	public Item getItem() {
+		return item;
+	}
+}
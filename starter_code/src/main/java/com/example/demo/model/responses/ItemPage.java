@@ -0,0 +1,31 @@
+package com.example.demo.model.responses;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * One page of the item listing. {@code next} is the cursor for the following page and is absent on the
+ * last one.
+ */
+public class ItemPage {
+
+	@JsonProperty
+	private final List<ItemView> items;
+
+	@JsonProperty
+	private final String next;
+
+	public ItemPage(List<ItemView> items, String next) {
+		this.items = items;
+		this.next = next;
+	}
+
+	public List<ItemView> getItems() {
+		return items;
+	}
+
+	public String getNext() {
+		return next;
+	}
+}
@@ -0,0 +1,53 @@
+package com.example.demo.model.responses;
+
+import java.math.BigDecimal;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Read-only view of an item for listings and search results. Fields that were not asked for are left
+ * {@code null} and omitted from the JSON.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ItemView {
+
+	@JsonProperty
+	private final Long id;
+
+	@JsonProperty
+	private final String name;
+
+	@JsonProperty
+	private final BigDecimal price;
+
+	@JsonProperty
+	private final String description;
+
+	public ItemView(Long id, String name, BigDecimal price) {
+		this(id, name, price, null);
+	}
+
+	public ItemView(Long id, String name, BigDecimal price, String description) {
+		this.id = id;
+		this.name = name;
+		this.price = price;
+		this.description = description;
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public BigDecimal getPrice() {
+		return price;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+}
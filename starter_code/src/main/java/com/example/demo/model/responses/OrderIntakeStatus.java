@@ -0,0 +1,52 @@
+package com.example.demo.model.responses;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Progress of an order accepted by the intake queue. The order id is only known once the order
+ * has been written.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class OrderIntakeStatus {
+
+	public enum State {
+		ACCEPTED, COMPLETED, FAILED
+	}
+
+	@JsonProperty
+	private final String reference;
+
+	@JsonIgnore
+	private final String username;
+
+	@JsonProperty
+	private final State state;
+
+	@JsonProperty
+	private final Long orderId;
+
+	public OrderIntakeStatus(String reference, String username, State state, Long orderId) {
+		this.reference = reference;
+		this.username = username;
+		this.state = state;
+		this.orderId = orderId;
+	}
+
+	public String getReference() {
+		return reference;
+	}
+
+	public String getUsername() {
+		return username;
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	public Long getOrderId() {
+		return orderId;
+	}
+}
@@ -0,0 +1,78 @@
+package com.example.demo.model.responses;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import com.example.demo.model.persistence.UserOrderSummary;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Lifetime order totals of a user and the items bought most often.
+ */
+public class OrderSummaryResponse {
+
+	public static final int FAVOURITE_ITEMS = 5;
+
+	@JsonProperty
+	private final long orderCount;
+
+	@JsonProperty
+	private final BigDecimal totalSpend;
+
+	@JsonProperty
+	private final List<FavouriteItem> favouriteItems;
+
+	public OrderSummaryResponse(long orderCount, BigDecimal totalSpend, List<FavouriteItem> favouriteItems) {
+		this.orderCount = orderCount;
+		this.totalSpend = totalSpend;
+		this.favouriteItems = favouriteItems;
+	}
+
+	public static OrderSummaryResponse from(UserOrderSummary summary) {
+		List<FavouriteItem> favourites = new ArrayList<>();
+		summary.getItemQuantities().entrySet().stream()
+				.sorted(Map.Entry.<Long, Long>comparingByValue(Comparator.reverseOrder())
+						.thenComparing(Map.Entry.comparingByKey()))
+				.limit(FAVOURITE_ITEMS)
+				.forEach(entry -> favourites.add(new FavouriteItem(entry.getKey(), entry.getValue())));
+		return new OrderSummaryResponse(summary.getOrderCount(),
+				BigDecimal.valueOf(summary.getTotalSpendCents(), 2), favourites);
+	}
+
+	public long getOrderCount() {
+		return orderCount;
+	}
+
+	public BigDecimal getTotalSpend() {
+		return totalSpend;
+	}
+
+	public List<FavouriteItem> getFavouriteItems() {
+		return favouriteItems;
+	}
+
+	public static class FavouriteItem {
+
+		@JsonProperty
+		private final long itemId;
+
+		@JsonProperty
+		private final long quantity;
+
+		public FavouriteItem(long itemId, long quantity) {
+			this.itemId = itemId;
+			this.quantity = quantity;
+		}
+
+		public long getItemId() {
+			return itemId;
+		}
+
+		public long getQuantity() {
+			return quantity;
+		}
+	}
+}
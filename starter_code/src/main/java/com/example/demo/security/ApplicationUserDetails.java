@@ -0,0 +1,30 @@
+package com.example.demo.security;
+
+import java.util.Collections;
+
+import org.springframework.security.core.userdetails.User;
+
+/**
+ * Spring Security user that also remembers the database ids needed for the JWT claims, so issuing a
+ * token after login does not need another query.
+ */
+public class ApplicationUserDetails extends User {
+
+	private final long userId;
+
+	private final Long cartId;
+
+	public ApplicationUserDetails(String username, String password, long userId, Long cartId) {
+		super(username, password, Collections.emptyList());
+		this.userId = userId;
+		this.cartId = cartId;
+	}
+
+	public long getUserId() {
+		return userId;
+	}
+
+	public Long getCartId() {
+		return cartId;
+	}
+}
@@ -9,6 +9,8 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -16,6 +18,7 @@ import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTCreator;
 import com.example.demo.model.persistence.User;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -44,6 +47,11 @@ public class JWTAuthenticationFilter extends UsernamePasswordAuthenticationFilte
                             credentials.getUsername(),
                             credentials.getPassword(),
                             new ArrayList<>()));
+    	} catch (PasswordHashingBusyException e) {
+    		// returning null ends the request here with the status below instead of a 401
+    		res.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+    		res.setHeader(HttpHeaders.RETRY_AFTER, "1");
+    		return null;
     	} catch (IOException e) {
     		throw new RuntimeException(e);
     	}
@@ -55,8 +63,14 @@ public class JWTAuthenticationFilter extends UsernamePasswordAuthenticationFilte
                                             FilterChain chain,
                                             Authentication auth) throws IOException, ServletException {
 
-        String token = JWT.create()
-                .withSubject(((org.springframework.security.core.userdetails.User) auth.getPrincipal()).getUsername())
+        ApplicationUserDetails user = (ApplicationUserDetails) auth.getPrincipal();
+        JWTCreator.Builder builder = JWT.create()
+                .withSubject(user.getUsername())
+                .withClaim(SecurityConstants.USER_ID_CLAIM, user.getUserId());
+        if (user.getCartId() != null) {
+            builder.withClaim(SecurityConstants.CART_ID_CLAIM, user.getCartId());
+        }
+        String token = builder
                 .withExpiresAt(new Date(System.currentTimeMillis() + SecurityConstants.EXPIRATION_TIME))
                 .sign(HMAC512(SecurityConstants.SECRET.getBytes()));
         res.addHeader(SecurityConstants.HEADER_STRING, SecurityConstants.TOKEN_PREFIX + token);
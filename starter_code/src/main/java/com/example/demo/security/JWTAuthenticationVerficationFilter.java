@@ -14,18 +14,17 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 import org.springframework.stereotype.Component;
 
-import com.auth0.jwt.JWT;
-
-import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
-
 /*
 code from 1.Auth branch from starter code of the udacity java-nanodegree Security and DevOps lesson
  */
 @Component
 public class JWTAuthenticationVerficationFilter extends BasicAuthenticationFilter {
 
-	public JWTAuthenticationVerficationFilter(AuthenticationManager authManager) {
+	private final VerifiedTokenCache verifiedTokenCache;
+
+	public JWTAuthenticationVerficationFilter(AuthenticationManager authManager, VerifiedTokenCache verifiedTokenCache) {
         super(authManager);
+        this.verifiedTokenCache = verifiedTokenCache;
     }
 
 	@Override
@@ -47,10 +46,9 @@ public class JWTAuthenticationVerficationFilter extends BasicAuthenticationFilte
 	private UsernamePasswordAuthenticationToken getAuthentication(HttpServletRequest req) {
 		String token = req.getHeader(SecurityConstants.HEADER_STRING);
         if (token != null) {
-            String user = JWT.require(HMAC512(SecurityConstants.SECRET.getBytes())).build()
-                    .verify(token.replace(SecurityConstants.TOKEN_PREFIX, ""))
-                    .getSubject();
-            if (user != null) {
+            UserPrincipal user = UserPrincipal.fromToken(
+                    verifiedTokenCache.verify(token.replace(SecurityConstants.TOKEN_PREFIX, "")));
+            if (user.getName() != null) {
                 return new UsernamePasswordAuthenticationToken(user, null, new ArrayList<>());
             }
             return null;
@@ -0,0 +1,12 @@
+package com.example.demo.security;
+
+/**
+ * Thrown when the password hashing pool and its queue are full. Callers should answer with a quick
+ * 503 so the client backs off, instead of parking a request thread behind the queue.
+ */
+public class PasswordHashingBusyException extends RuntimeException {
+
+	public PasswordHashingBusyException() {
+		super("Password hashing queue is full");
+	}
+}
@@ -0,0 +1,120 @@
+package com.example.demo.security;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * BCrypt encoder that runs every hash and match on a dedicated, fixed-size pool with a bounded queue.
+ * The calling request thread still waits for the result, so this does not free servlet threads during
+ * a hash; what it bounds is the CPU: at most {@code threads} hashes run at once, however many logins
+ * arrive, leaving cores for the cheap reads. When the queue is full the call fails fast with
+ * {@link PasswordHashingBusyException} instead of parking yet another request thread.
+ */
+public class PooledBCryptPasswordEncoder extends BCryptPasswordEncoder implements MeterBinder {
+
+	private final ThreadPoolExecutor executor;
+
+	private final AtomicLong hashCount = new AtomicLong();
+
+	private final AtomicLong hashNanos = new AtomicLong();
+
+	private final AtomicLong rejectedCount = new AtomicLong();
+
+	public PooledBCryptPasswordEncoder(int threads, int queueCapacity) {
+		this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity), new HashingThreadFactory(),
+				new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	@Override
+	public String encode(CharSequence rawPassword) {
+		return run(() -> super.encode(rawPassword));
+	}
+
+	@Override
+	public boolean matches(CharSequence rawPassword, String encodedPassword) {
+		return run(() -> super.matches(rawPassword, encodedPassword));
+	}
+
+	public int getQueueDepth() {
+		return executor.getQueue().size();
+	}
+
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder("password.hashing.queue.depth", executor, e -> e.getQueue().size())
+				.description("Password hashing tasks waiting for a worker")
+				.register(registry);
+		Gauge.builder("password.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+				.description("Password hashing workers currently busy")
+				.register(registry);
+		FunctionTimer.builder("password.hashing", this, e -> e.hashCount.get(), e -> e.hashNanos.get(),
+				TimeUnit.NANOSECONDS)
+				.description("Time spent computing BCrypt hashes and matches")
+				.register(registry);
+		FunctionCounter.builder("password.hashing.rejected", this, e -> e.rejectedCount.get())
+				.description("Password hashing requests turned away because the queue was full")
+				.register(registry);
+	}
+
+	private <T> T run(Callable<T> hashing) {
+		Future<T> result;
+		try {
+			result = executor.submit(() -> {
+				long start = System.nanoTime();
+				try {
+					return hashing.call();
+				} finally {
+					hashNanos.addAndGet(System.nanoTime() - start);
+					hashCount.incrementAndGet();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			rejectedCount.incrementAndGet();
+			throw new PasswordHashingBusyException();
+		}
+		try {
+			return result.get();
+		} catch (InterruptedException e) {
+			result.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for password hashing", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	private static final class HashingThreadFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "password-hashing-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package com.example.demo.security;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.cache.ExpiringLruCache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * In-process cache in front of the user lookup done on every login, plugged into the authentication
+ * provider as its {@link UserCache}. Unknown usernames are remembered too, for a shorter time, so
+ * credential stuffing with random names does not reach the database; {@link UserDetailsServiceImpl}
+ * consults and fills that part.
+ */
+@Component
+public class UserDetailsCache implements UserCache, MeterBinder {
+
+	private final ExpiringLruCache<String, ApplicationUserDetails> users;
+
+	private final ExpiringLruCache<String, Boolean> unknown;
+
+	private final long timeToLiveSeconds;
+
+	private final long missTimeToLiveSeconds;
+
+	@Autowired
+	public UserDetailsCache(@Value("${security.user-cache.maximum-size:10000}") int maximumSize,
+			@Value("${security.user-cache.time-to-live-seconds:300}") long timeToLiveSeconds,
+			@Value("${security.user-cache.miss-time-to-live-seconds:30}") long missTimeToLiveSeconds) {
+		this(maximumSize, timeToLiveSeconds, missTimeToLiveSeconds, System::currentTimeMillis);
+	}
+
+	UserDetailsCache(int maximumSize, long timeToLiveSeconds, long missTimeToLiveSeconds, LongSupplier clock) {
+		this.users = new ExpiringLruCache<>(maximumSize, clock);
+		this.unknown = new ExpiringLruCache<>(maximumSize, clock);
+		this.timeToLiveSeconds = timeToLiveSeconds;
+		this.missTimeToLiveSeconds = missTimeToLiveSeconds;
+	}
+
+	@Override
+	public UserDetails getUserFromCache(String username) {
+		ApplicationUserDetails user = users.get(username);
+		// Spring Security erases the password on the returned principal after login, so never hand out the cached instance
+		return user == null ? null : copy(user);
+	}
+
+	@Override
+	public void putUserInCache(UserDetails user) {
+		if (user instanceof ApplicationUserDetails) {
+			users.put(user.getUsername(), copy((ApplicationUserDetails) user), timeToLiveSeconds, TimeUnit.SECONDS);
+			unknown.invalidate(user.getUsername());
+		}
+	}
+
+	/**
+	 * Drops whatever is cached for the username, including a remembered miss. Call after any write
+	 * that creates the user or changes its password hash.
+	 */
+	@Override
+	public void removeUserFromCache(String username) {
+		users.invalidate(username);
+		unknown.invalidate(username);
+	}
+
+	/**
+	 * @return whether a lookup of the username recently found no user
+	 */
+	public boolean isUnknown(String username) {
+		return unknown.get(username) != null;
+	}
+
+	public void putUnknown(String username) {
+		unknown.put(username, Boolean.TRUE, missTimeToLiveSeconds, TimeUnit.SECONDS);
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		users.bindTo(registry, "security.user-details");
+		unknown.bindTo(registry, "security.user-details.unknown");
+	}
+
+	private static ApplicationUserDetails copy(ApplicationUserDetails user) {
+		return new ApplicationUserDetails(user.getUsername(), user.getPassword(), user.getUserId(), user.getCartId());
+	}
+}
@@ -1,7 +1,5 @@
 package com.example.demo.security;
 
-import java.util.Collections;
-
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -20,12 +18,24 @@ public class UserDetailsServiceImpl implements UserDetailsService {
 	@Autowired
 	private UserRepository userRepository;
 
+	@Autowired
+	private UserDetailsCache userDetailsCache;
+
+    /**
+     * Found users are cached by the authentication provider through {@link UserDetailsCache}; unknown
+     * usernames are remembered here so repeated attempts do not reach the database.
+     */
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        if (userDetailsCache.isUnknown(username)) {
+            throw new UsernameNotFoundException(username);
+        }
         User user = userRepository.findByUsername(username);
         if (user == null) {
+            userDetailsCache.putUnknown(username);
             throw new UsernameNotFoundException(username);
         }
-        return new org.springframework.security.core.userdetails.User(user.getUsername(), user.getPassword(), Collections.emptyList());
+        Long cartId = user.getCart() == null ? null : user.getCart().getId();
+        return new ApplicationUserDetails(user.getUsername(), user.getPassword(), user.getId(), cartId);
     }
 }
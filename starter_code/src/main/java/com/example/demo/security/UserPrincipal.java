@@ -0,0 +1,56 @@
+package com.example.demo.security;
+
+import java.security.Principal;
+
+import com.auth0.jwt.interfaces.DecodedJWT;
+
+/**
+ * Authenticated caller as read from a verified JWT. Carries the user and cart ids signed into the
+ * token so controllers can load by primary key instead of looking the user up by name. Both ids are
+ * {@code null} for tokens issued before the claims were added.
+ */
+public class UserPrincipal implements Principal {
+
+	private final String username;
+
+	private final Long userId;
+
+	private final Long cartId;
+
+	public UserPrincipal(String username, Long userId, Long cartId) {
+		this.username = username;
+		this.userId = userId;
+		this.cartId = cartId;
+	}
+
+	public static UserPrincipal fromToken(DecodedJWT jwt) {
+		return new UserPrincipal(jwt.getSubject(),
+				jwt.getClaim(SecurityConstants.USER_ID_CLAIM).asLong(),
+				jwt.getClaim(SecurityConstants.CART_ID_CLAIM).asLong());
+	}
+
+	@Override
+	public String getName() {
+		return username;
+	}
+
+	public Long getUserId() {
+		return userId;
+	}
+
+	public Long getCartId() {
+		return cartId;
+	}
+
+	/**
+	 * True when this principal is the given user, i.e. its token claims may stand in for a lookup by name.
+	 */
+	public boolean isUser(String username) {
+		return this.username != null && this.username.equals(username);
+	}
+
+	@Override
+	public String toString() {
+		return username;
+	}
+}
@@ -0,0 +1,69 @@
+package com.example.demo.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.example.demo.cache.ExpiringLruCache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
+
+/**
+ * Remembers tokens that already passed signature verification so a client repeating the same
+ * bearer token only pays for a SHA-256 digest and a map lookup. Entries are keyed by the digest,
+ * never by the raw token, and are dropped at the token's {@code exp} claim or on LRU pressure.
+ */
+@Component
+public class VerifiedTokenCache implements MeterBinder {
+
+	private final JWTVerifier verifier = JWT.require(HMAC512(SecurityConstants.SECRET.getBytes())).build();
+
+	private final ExpiringLruCache<String, DecodedJWT> verified;
+
+	public VerifiedTokenCache(@Value("${security.jwt.cache.maximum-size:10000}") int maximumSize) {
+		this.verified = new ExpiringLruCache<>(maximumSize);
+	}
+
+	/**
+	 * @throws JWTVerificationException when the token is malformed, badly signed or expired
+	 */
+	public DecodedJWT verify(String token) {
+		String key = digest(token);
+		DecodedJWT jwt = verified.get(key);
+		if (jwt != null) {
+			return jwt;
+		}
+		jwt = verifier.verify(token);
+		Date expiresAt = jwt.getExpiresAt();
+		if (expiresAt != null) {
+			verified.put(key, jwt, expiresAt.getTime());
+		}
+		return jwt;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		verified.bindTo(registry, "jwt.verified-tokens");
+	}
+
+	private static String digest(String token) {
+		try {
+			MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+			return Base64.getEncoder().encodeToString(sha256.digest(token.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
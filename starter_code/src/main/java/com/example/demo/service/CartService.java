@@ -0,0 +1,222 @@
+package com.example.demo.service;
+
+import java.util.Locale;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.CartLine;
+import com.example.demo.model.persistence.User;
+import com.example.demo.model.persistence.repositories.CartRepository;
+import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.security.UserPrincipal;
+
+/**
+ * Cart lookups and read-modify-write updates. Updates rely on the cart's {@code @Version}: a writer that
+ * lost a race reloads the cart and re-applies its change, up to a bounded number of attempts. Hot carts
+ * can additionally be serialised in-process with striped locks keyed by cart id; the cart is then loaded
+ * once the lock is held, so writers queued behind each other do not start from the same stale state. The
+ * stripes are opt-in and only cover writers in this process; turn them on for a single instance on the
+ * bundled H2, which can lose concurrent writes to one row that the version check does not see. When the
+ * write-behind store is enabled, reads and updates go to the in-memory cart instead and the database is
+ * written later.
+ */
+@Service
+public class CartService {
+
+	private static final Logger log = LoggerFactory.getLogger(CartService.class);
+
+	// two writers inserting the first line for the same item, see V1__schema.sql
+	private static final String CART_LINE_CONSTRAINT = "uk_cart_line_cart_item";
+
+	private final CartRepository cartRepository;
+
+	private final UserRepository userRepository;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final WriteBehindCartStore writeBehind;
+
+	private final int maxAttempts;
+
+	private final Lock[] stripes;
+
+	public CartService(CartRepository cartRepository, UserRepository userRepository,
+			PlatformTransactionManager transactionManager, WriteBehindCartStore writeBehind,
+			@Value("${cart.update.max-attempts:5}") int maxAttempts,
+			@Value("${cart.lock-striping.enabled:false}") boolean lockStriping,
+			@Value("${cart.lock-striping.stripes:64}") int stripeCount) {
+		this.cartRepository = cartRepository;
+		this.userRepository = userRepository;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.writeBehind = writeBehind;
+		this.maxAttempts = maxAttempts;
+		if (lockStriping) {
+			this.stripes = new Lock[stripeCount];
+			for (int i = 0; i < stripeCount; i++) {
+				stripes[i] = new ReentrantLock();
+			}
+		} else {
+			this.stripes = null;
+		}
+	}
+
+	/**
+	 * Resolves the cart straight from the token's cart id when the caller is acting on their own cart,
+	 * falling back to a lookup by username otherwise.
+	 */
+	public Cart findCart(String username, UserPrincipal principal) {
+		if (principal != null && principal.getCartId() != null && principal.isUser(username)) {
+			Cart buffered = buffered(principal.getCartId());
+			return buffered != null ? buffered : cartRepository.findWithLinesById(principal.getCartId()).orElse(null);
+		}
+		User user = userRepository.findWithCartByUsername(username);
+		if (user == null || user.getCart() == null) {
+			return null;
+		}
+		Cart buffered = buffered(user.getCart().getId());
+		return buffered != null ? buffered : user.getCart();
+	}
+
+	/**
+	 * Resolves only the id of the cart, from the token when the caller is acting on their own cart.
+	 *
+	 * @return the cart id, or {@code null} when the user or their cart does not exist
+	 */
+	public Long findCartId(String username, UserPrincipal principal) {
+		if (principal != null && principal.getCartId() != null && principal.isUser(username)) {
+			return principal.getCartId();
+		}
+		return userRepository.findCartIdByUsername(username);
+	}
+
+	/**
+	 * Strong entity tag of the cart's current state: its id, its version, the sum of its items' versions and
+	 * any changes not yet written. While the cart version stands its lines do not change, and item versions
+	 * only grow, so an edited name or price on any line changes the tag too.
+	 */
+	public String tag(Cart cart) {
+		long itemVersions = 0;
+		for (CartLine line : cart.getLines().values()) {
+			Long version = line.getItem().getVersion();
+			itemVersions += version == null ? 0 : version;
+		}
+		return tag(cart.getId(), cart.getVersion(), itemVersions, cart.getUnflushedChanges());
+	}
+
+	/**
+	 * Entity tag of the principal's cart, worked out from the version columns alone without loading the
+	 * cart and its lines.
+	 *
+	 * @return the tag, or {@code null} when it cannot be determined cheaply
+	 */
+	public String currentTag(UserPrincipal principal) {
+		if (principal == null || principal.getCartId() == null) {
+			return null;
+		}
+		Cart buffered = buffered(principal.getCartId());
+		if (buffered != null) {
+			return tag(buffered);
+		}
+		CartRepository.TagState state = cartRepository.findTagStateById(principal.getCartId());
+		return state == null ? null : tag(principal.getCartId(), state.getVersion(), state.getItemVersions(), 0);
+	}
+
+	/**
+	 * Makes sure the database holds the latest state of the cart, e.g. before an order is built from it.
+	 *
+	 * @return the cart as persisted
+	 */
+	public Cart flush(Cart cart) {
+		return writeBehind.isEnabled() ? writeBehind.flush(cart) : cart;
+	}
+
+	/**
+	 * Loads the cart, applies the mutation and saves it. If another writer saved the cart in the meantime
+	 * the cart is reloaded and the mutation applied again, so the mutation must only depend on the cart it
+	 * is given.
+	 *
+	 * @return the saved cart, or {@code null} when there is no cart with that id
+	 * @throws OptimisticLockingFailureException when every attempt lost the race
+	 */
+	public Cart update(long cartId, Consumer<Cart> mutation) {
+		if (writeBehind.isEnabled()) {
+			Cart loaded = buffered(cartId);
+			if (loaded == null) {
+				loaded = cartRepository.findWithLinesById(cartId).orElse(null);
+			}
+			return loaded == null ? null : writeBehind.update(loaded, mutation);
+		}
+		Lock lock = lockFor(cartId);
+		if (lock != null) {
+			lock.lock();
+		}
+		try {
+			Cart current = cartRepository.findWithLinesById(cartId).orElse(null);
+			if (current == null) {
+				return null;
+			}
+			for (int attempt = 1; ; attempt++) {
+				Cart target = current;
+				try {
+					return transactionTemplate.execute(status -> {
+						mutation.accept(target);
+						return cartRepository.save(target);
+					});
+				} catch (ConcurrencyFailureException | DataIntegrityViolationException e) {
+					// a stale version, or a racing insert of the same cart line, both mean another writer won
+					if (e instanceof DataIntegrityViolationException && !isCartLineRace(e)) {
+						throw e;
+					}
+					if (attempt >= maxAttempts) {
+						log.error("cart " + cartId + " was modified concurrently, giving up after " + attempt + " attempts");
+						throw new OptimisticLockingFailureException("cart " + cartId + " was modified concurrently", e);
+					}
+					log.debug("cart " + cartId + " was modified concurrently, retrying");
+					current = cartRepository.findWithLinesById(cartId).orElseThrow(() -> e);
+				}
+			}
+		} finally {
+			if (lock != null) {
+				lock.unlock();
+			}
+		}
+	}
+
+	private static boolean isCartLineRace(Throwable e) {
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof ConstraintViolationException) {
+				String constraint = ((ConstraintViolationException) cause).getConstraintName();
+				return constraint != null && constraint.toLowerCase(Locale.ROOT).contains(CART_LINE_CONSTRAINT);
+			}
+		}
+		return false;
+	}
+
+	private static String tag(Long cartId, Long version, long itemVersions, int unflushedChanges) {
+		return "\"" + cartId + "-" + version + "-" + itemVersions + "-" + unflushedChanges + "\"";
+	}
+
+	private Cart buffered(Long cartId) {
+		return writeBehind.isEnabled() ? writeBehind.get(cartId) : null;
+	}
+
+	private Lock lockFor(long cartId) {
+		if (stripes == null) {
+			return null;
+		}
+		return stripes[Math.floorMod(Long.hashCode(cartId), stripes.length)];
+	}
+}
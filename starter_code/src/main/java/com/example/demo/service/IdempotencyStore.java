@@ -0,0 +1,96 @@
+package com.example.demo.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.cache.ExpiringLruCache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Remembers the responses of recent requests by their {@code Idempotency-Key} so a retried request gets
+ * the original response instead of being executed again. A retry that arrives while the first attempt is
+ * still running waits for it. Only successful responses are kept: when the first attempt fails or answers
+ * with an error, the key is released and a waiting retry runs its own request.
+ */
+@Component
+public class IdempotencyStore implements MeterBinder {
+
+	public static final String HEADER = "Idempotency-Key";
+
+	public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+	public static final int MAX_KEY_LENGTH = 255;
+
+	private final ExpiringLruCache<String, CompletableFuture<ResponseEntity<?>>> responses;
+
+	private final long timeToLiveSeconds;
+
+	private final AtomicLong replays = new AtomicLong();
+
+	public IdempotencyStore(@Value("${idempotency.maximum-size:10000}") int maximumSize,
+			@Value("${idempotency.time-to-live-seconds:86400}") long timeToLiveSeconds) {
+		this.responses = new ExpiringLruCache<>(maximumSize);
+		this.timeToLiveSeconds = timeToLiveSeconds;
+	}
+
+	/**
+	 * Runs the action once per scope and key within the time to live.
+	 *
+	 * @param scope separates keys of different callers and endpoints, e.g. the authenticated username
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> ResponseEntity<T> execute(String scope, String key, Supplier<ResponseEntity<T>> action) {
+		String cacheKey = scope + '\n' + key;
+		CompletableFuture<ResponseEntity<?>> pending = new CompletableFuture<>();
+		while (true) {
+			CompletableFuture<ResponseEntity<?>> original = responses.putIfAbsent(cacheKey, pending,
+					timeToLiveSeconds, TimeUnit.SECONDS);
+			if (original == null) {
+				break;
+			}
+			// null when the first attempt did not succeed; its key is free again, so claim it
+			ResponseEntity<?> stored = original.join();
+			if (stored != null) {
+				replays.incrementAndGet();
+				return replay((ResponseEntity<T>) stored);
+			}
+		}
+		ResponseEntity<T> response = null;
+		try {
+			response = action.get();
+			return response;
+		} finally {
+			boolean succeeded = response != null && response.getStatusCode().is2xxSuccessful();
+			if (!succeeded) {
+				responses.invalidate(cacheKey);
+			}
+			pending.complete(succeeded ? response : null);
+		}
+	}
+
+	public long replayCount() {
+		return replays.get();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		FunctionCounter.builder("idempotency.replays", replays, AtomicLong::get)
+				.description("Requests answered with the stored response of an earlier request with the same key")
+				.register(registry);
+		responses.bindTo(registry, "idempotency.responses");
+	}
+
+	private static <T> ResponseEntity<T> replay(ResponseEntity<T> response) {
+		return ResponseEntity.status(response.getStatusCode()).headers(response.getHeaders())
+				.header(REPLAYED_HEADER, "true").body(response.getBody());
+	}
+}
@@ -0,0 +1,151 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.cache.ExpiringLruCache;
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Read-through cache in front of {@link ItemRepository}, indexed by id and by name. Entries are bounded in
+ * number and expire after a while as a safety net; writers are expected to publish an
+ * {@link ItemsChangedEvent} so changes show up immediately. Cached items are shared and must not be
+ * modified. The full listing is not cached: it is read a page at a time, and one entry holding every item
+ * would slip past the bound.
+ */
+@Service
+public class ItemCatalog implements MeterBinder {
+
+	private final ItemRepository itemRepository;
+
+	private final long timeToLiveSeconds;
+
+	private final ExpiringLruCache<Long, Optional<Item>> byId;
+
+	private final ExpiringLruCache<String, List<Item>> byName;
+
+	// bumped by every invalidation, a load that started before one must not stay cached
+	private final AtomicLong generation = new AtomicLong();
+
+	private volatile Timer loadTimer;
+
+	public ItemCatalog(ItemRepository itemRepository,
+			@Value("${item.catalog.maximum-size:10000}") int maximumSize,
+			@Value("${item.catalog.time-to-live-seconds:300}") long timeToLiveSeconds) {
+		this.itemRepository = itemRepository;
+		this.timeToLiveSeconds = timeToLiveSeconds;
+		this.byId = new ExpiringLruCache<>(maximumSize);
+		this.byName = new ExpiringLruCache<>(maximumSize);
+	}
+
+	public Optional<Item> findById(Long id) {
+		Optional<Item> item = byId.get(id);
+		if (item == null) {
+			item = load(byId, id, () -> itemRepository.findById(id));
+		}
+		return item;
+	}
+
+	public List<Item> findByName(String name) {
+		List<Item> items = byName.get(name);
+		if (items == null) {
+			items = load(byName, name, () -> Collections.unmodifiableList(itemRepository.findByName(name)));
+		}
+		return items;
+	}
+
+	/**
+	 * Resolves the ids from the cache and loads the rest with a single query.
+	 *
+	 * @return the items found, in no particular order
+	 */
+	public List<Item> findAllById(Iterable<Long> ids) {
+		List<Item> found = new ArrayList<>();
+		List<Long> missing = new ArrayList<>();
+		for (Long id : ids) {
+			Optional<Item> item = byId.get(id);
+			if (item == null) {
+				missing.add(id);
+			} else {
+				item.ifPresent(found::add);
+			}
+		}
+		if (!missing.isEmpty()) {
+			long loadGeneration = generation.get();
+			Map<Long, Optional<Item>> loaded = new LinkedHashMap<>();
+			for (Long id : missing) {
+				loaded.put(id, Optional.empty());
+			}
+			for (Item item : timed(() -> itemRepository.findAllById(missing))) {
+				loaded.put(item.getId(), Optional.of(item));
+				found.add(item);
+			}
+			loaded.forEach((id, item) -> byId.put(id, item, timeToLiveSeconds, TimeUnit.SECONDS));
+			if (generation.get() != loadGeneration) {
+				loaded.keySet().forEach(byId::invalidate);
+			}
+		}
+		return found;
+	}
+
+	@EventListener
+	public void onItemsChanged(ItemsChangedEvent event) {
+		if (event.isAll()) {
+			invalidateAll();
+			return;
+		}
+		generation.incrementAndGet();
+		for (Long id : event.getItemIds()) {
+			byId.invalidate(id);
+		}
+		// names may include the changed items under any key
+		byName.invalidateAll();
+	}
+
+	public void invalidateAll() {
+		generation.incrementAndGet();
+		byId.invalidateAll();
+		byName.invalidateAll();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		byId.bindTo(registry, "item.catalog.by-id");
+		byName.bindTo(registry, "item.catalog.by-name");
+		loadTimer = Timer.builder("item.catalog.load")
+				.description("Time spent loading items from the database on cache misses")
+				.register(registry);
+	}
+
+	private <K, V> V load(ExpiringLruCache<K, V> cache, K key, Supplier<V> loader) {
+		long loadGeneration = generation.get();
+		V value = timed(loader);
+		cache.put(key, value, timeToLiveSeconds, TimeUnit.SECONDS);
+		// an invalidation during the load may have missed this entry, drop it again
+		if (generation.get() != loadGeneration) {
+			cache.invalidate(key);
+		}
+		return value;
+	}
+
+	private <V> V timed(Supplier<V> loader) {
+		Timer timer = loadTimer;
+		return timer == null ? loader.get() : timer.record(loader);
+	}
+}
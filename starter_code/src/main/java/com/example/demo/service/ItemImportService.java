@@ -0,0 +1,333 @@
+package com.example.demo.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManagerFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+import org.springframework.jdbc.support.incrementer.H2SequenceMaxValueIncrementer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.responses.ItemImportResult;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Imports items from a CSV or newline-delimited JSON feed. Rows are parsed one at a time and written with
+ * JDBC batches, a chunk of rows per transaction, so memory use does not grow with the size of the feed.
+ * Rows with an id update that item, rows without one are inserted. A feed that breaks off keeps the chunks
+ * written before the break. The writes bypass Hibernate, so updated items are evicted from the
+ * second-level cache after each chunk, and the whole item region once the import ends.
+ */
+@Service
+public class ItemImportService {
+
+	private static final Logger log = LoggerFactory.getLogger(ItemImportService.class);
+
+	public enum Format {
+		/** A header line naming the columns {@code id}, {@code name}, {@code price} and {@code description}. */
+		CSV,
+		/** One object per line with the properties {@code id}, {@code name}, {@code price} and {@code description}. */
+		NDJSON
+	}
+
+	private static final String INSERT = "insert into item (id, name, price, description) values (?, ?, ?, ?)";
+
+	// bumps the version like a JPA update would, so carts holding the item get a new entity tag
+	private static final String UPDATE = "update item set name = ?, price = ?, description = ?, version = version + 1 "
+			+ "where id = ?";
+
+	// must match the allocation size of the item id generator, see Item
+	private static final int ID_BLOCK_SIZE = 50;
+
+	private static final int MAX_LOGGED_REJECTIONS = 10;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final ApplicationEventPublisher eventPublisher;
+
+	private final ObjectMapper objectMapper;
+
+	private final Cache secondLevelCache;
+
+	private final int chunkSize;
+
+	private final int progressInterval;
+
+	private final DataFieldMaxValueIncrementer itemSequence;
+
+	private long nextId;
+
+	private long lastId = -1;
+
+	public ItemImportService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+			ApplicationEventPublisher eventPublisher, ObjectMapper objectMapper,
+			EntityManagerFactory entityManagerFactory,
+			@Value("${item.import.chunk-size:1000}") int chunkSize,
+			@Value("${item.import.progress-interval:100000}") int progressInterval) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.eventPublisher = eventPublisher;
+		this.objectMapper = objectMapper;
+		this.secondLevelCache = entityManagerFactory.getCache();
+		this.chunkSize = chunkSize;
+		this.progressInterval = progressInterval;
+		this.itemSequence = new H2SequenceMaxValueIncrementer(jdbcTemplate.getDataSource(), "item_seq");
+	}
+
+	/**
+	 * @throws IOException if the feed cannot be read or is not well-formed; single rows with missing or
+	 *                     invalid values are rejected and counted instead
+	 */
+	public ItemImportResult importItems(InputStream in, Format format) throws IOException {
+		Run run = new Run();
+		try {
+			if (format == Format.CSV) {
+				readCsv(in, run);
+			} else {
+				readNdjson(in, run);
+			}
+			run.flush();
+		} finally {
+			if (run.inserted + run.updated > 0) {
+				secondLevelCache.evict(Item.class);
+				eventPublisher.publishEvent(ItemsChangedEvent.all());
+			}
+		}
+		ItemImportResult result = run.result();
+		log.info("item import finished: " + result.getInserted() + " inserted, " + result.getUpdated()
+				+ " updated, " + result.getRejected() + " rejected in " + result.getElapsedMillis() + " ms ("
+				+ result.getRowsPerSecond() + " rows/s)");
+		return result;
+	}
+
+	private void readCsv(InputStream in, Run run) throws IOException {
+		CsvReader reader = new CsvReader(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+		List<String> header = reader.next();
+		if (header == null) {
+			return;
+		}
+		int id = header.indexOf("id");
+		int name = header.indexOf("name");
+		int price = header.indexOf("price");
+		int description = header.indexOf("description");
+		if (name < 0 || price < 0 || description < 0) {
+			throw new IOException("CSV header must name the columns name, price and description");
+		}
+		List<String> fields;
+		while ((fields = reader.next()) != null) {
+			if (fields.size() == 1 && fields.get(0).isEmpty()) {
+				continue;
+			}
+			run.add(field(fields, id), field(fields, name), field(fields, price), field(fields, description));
+		}
+	}
+
+	private void readNdjson(InputStream in, Run run) throws IOException {
+		JsonParser parser = objectMapper.getFactory().createParser(in);
+		try (MappingIterator<JsonNode> rows = objectMapper.readerFor(JsonNode.class).readValues(parser)) {
+			while (rows.hasNextValue()) {
+				JsonNode row = rows.nextValue();
+				run.add(text(row, "id"), text(row, "name"), text(row, "price"), text(row, "description"));
+			}
+		}
+	}
+
+	/**
+	 * Hands out item ids the way Hibernate's pooled optimizer does, so imported rows and entities saved
+	 * through JPA never collide: a sequence value reserves itself and the block of ids below it.
+	 */
+	private synchronized long nextItemId() {
+		if (nextId > lastId) {
+			lastId = itemSequence.nextLongValue();
+			nextId = Math.max(1, lastId - ID_BLOCK_SIZE + 1);
+		}
+		return nextId++;
+	}
+
+	private static String field(List<String> fields, int index) {
+		return index >= 0 && index < fields.size() ? fields.get(index) : null;
+	}
+
+	private static String text(JsonNode row, String property) {
+		JsonNode value = row.get(property);
+		return value == null || value.isNull() ? null : value.asText();
+	}
+
+	/**
+	 * Counters and the pending chunk of one import.
+	 */
+	private final class Run {
+		private final long start = System.nanoTime();
+		private final List<Object[]> inserts = new ArrayList<>();
+		private final List<Object[]> updates = new ArrayList<>();
+		private long rows;
+		private long inserted;
+		private long updated;
+		private long rejected;
+
+		private void add(String id, String name, String price, String description) {
+			rows++;
+			try {
+				if (name == null || name.trim().isEmpty() || description == null) {
+					throw new IllegalArgumentException("name and description are required");
+				}
+				BigDecimal amount = new BigDecimal(price == null ? "" : price.trim());
+				if (id == null || id.trim().isEmpty()) {
+					inserts.add(new Object[] { nextItemId(), name.trim(), amount, description });
+				} else {
+					updates.add(new Object[] { name.trim(), amount, description, Long.valueOf(id.trim()) });
+				}
+			} catch (IllegalArgumentException e) {
+				reject("row " + rows + ": " + e.getMessage());
+				return;
+			}
+			if (inserts.size() + updates.size() >= chunkSize) {
+				flush();
+			}
+			if (rows % progressInterval == 0) {
+				log.info("item import read " + rows + " rows, " + rowsPerSecond() + " rows/s");
+			}
+		}
+
+		private void flush() {
+			if (inserts.isEmpty() && updates.isEmpty()) {
+				return;
+			}
+			transactionTemplate.execute(status -> {
+				if (!inserts.isEmpty()) {
+					jdbcTemplate.batchUpdate(INSERT, inserts);
+					inserted += inserts.size();
+				}
+				if (!updates.isEmpty()) {
+					int[] counts = jdbcTemplate.batchUpdate(UPDATE, updates);
+					for (int i = 0; i < counts.length; i++) {
+						if (counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO) {
+							updated++;
+						} else {
+							reject("no item with id " + updates.get(i)[3]);
+						}
+					}
+				}
+				return null;
+			});
+			for (Object[] update : updates) {
+				secondLevelCache.evict(Item.class, update[3]);
+			}
+			inserts.clear();
+			updates.clear();
+		}
+
+		private void reject(String reason) {
+			rejected++;
+			if (rejected <= MAX_LOGGED_REJECTIONS) {
+				log.warn("item import rejected " + reason);
+			}
+		}
+
+		private long rowsPerSecond() {
+			long nanos = Math.max(1, System.nanoTime() - start);
+			return rows * 1_000_000_000L / nanos;
+		}
+
+		private ItemImportResult result() {
+			return new ItemImportResult(inserted, updated, rejected, (System.nanoTime() - start) / 1_000_000,
+					rowsPerSecond());
+		}
+	}
+
+	/**
+	 * Reads RFC 4180 records: comma separated, fields optionally in double quotes, quotes inside quoted
+	 * fields doubled. Quoted fields may span lines.
+	 */
+	static final class CsvReader {
+		private final Reader in;
+		private int peeked = -2;
+
+		CsvReader(Reader in) {
+			this.in = in;
+		}
+
+		/**
+		 * @return the fields of the next record, or {@code null} at the end of the input
+		 */
+		List<String> next() throws IOException {
+			int c = read();
+			if (c < 0) {
+				return null;
+			}
+			List<String> fields = new ArrayList<>();
+			StringBuilder field = new StringBuilder();
+			boolean quoted = false;
+			while (true) {
+				if (quoted) {
+					if (c < 0) {
+						throw new IOException("unterminated quoted CSV field");
+					}
+					if (c == '"') {
+						if (peek() == '"') {
+							read();
+							field.append('"');
+						} else {
+							quoted = false;
+						}
+					} else {
+						field.append((char) c);
+					}
+				} else if (c == '"' && field.length() == 0) {
+					quoted = true;
+				} else if (c == ',') {
+					fields.add(field.toString());
+					field.setLength(0);
+				} else if (c == '\r' || c == '\n' || c < 0) {
+					if (c == '\r' && peek() == '\n') {
+						read();
+					}
+					fields.add(field.toString());
+					return fields;
+				} else {
+					field.append((char) c);
+				}
+				c = read();
+			}
+		}
+
+		private int read() throws IOException {
+			if (peeked != -2) {
+				int c = peeked;
+				peeked = -2;
+				return c;
+			}
+			return in.read();
+		}
+
+		private int peek() throws IOException {
+			if (peeked == -2) {
+				peeked = in.read();
+			}
+			return peeked;
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.example.demo.model.responses.ItemView;
+
+/**
+ * In-memory, case-insensitive index of item names for prefix search. Names are kept in a sorted
+ * skip list, so a lookup is a logarithmic seek followed by a scan of the matches that are returned.
+ * The index is built when the application starts and patched for the items named in each
+ * {@link ItemsChangedEvent}.
+ */
+@Service
+public class ItemNameIndex {
+
+	private static final Logger log = LoggerFactory.getLogger(ItemNameIndex.class);
+
+	public static final int MAX_LIMIT = 50;
+
+	private final ItemRepository itemRepository;
+
+	private final TransactionTemplate readOnlyTransaction;
+
+	private volatile Index index = new Index();
+
+	// serialises writers, readers never block
+	private final Object writeLock = new Object();
+
+	public ItemNameIndex(ItemRepository itemRepository, PlatformTransactionManager transactionManager) {
+		this.itemRepository = itemRepository;
+		this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+		this.readOnlyTransaction.setReadOnly(true);
+	}
+
+	/**
+	 * @return up to {@code limit} items whose name starts with the prefix, ignoring case, in name order
+	 */
+	public List<ItemView> search(String prefix, int limit) {
+		String key = normalize(prefix);
+		int max = Math.max(1, Math.min(limit, MAX_LIMIT));
+		List<ItemView> matches = new ArrayList<>(Math.min(max, 16));
+		for (Entry entry : index.entries.tailSet(new Entry(key, Long.MIN_VALUE, null))) {
+			if (!entry.key.startsWith(key) || matches.size() == max) {
+				break;
+			}
+			matches.add(entry.item);
+		}
+		return matches;
+	}
+
+	public int size() {
+		return index.byId.size();
+	}
+
+	/**
+	 * Replaces the index with one built from the whole catalog.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void rebuild() {
+		synchronized (writeLock) {
+			Index rebuilt = new Index();
+			readOnlyTransaction.execute(status -> {
+				try (Stream<ItemView> items = itemRepository.streamViews()) {
+					items.forEach(rebuilt::put);
+				}
+				return null;
+			});
+			index = rebuilt;
+			log.info("item name index built with " + rebuilt.byId.size() + " items");
+		}
+	}
+
+	@EventListener
+	public void onItemsChanged(ItemsChangedEvent event) {
+		if (event.isAll()) {
+			rebuild();
+			return;
+		}
+		Collection<Long> ids = event.getItemIds();
+		synchronized (writeLock) {
+			List<ItemView> items = readOnlyTransaction.execute(status -> itemRepository.findViewsByIdIn(ids));
+			Index current = index;
+			Set<Long> deleted = new HashSet<>(ids);
+			for (ItemView item : items) {
+				current.put(item);
+				deleted.remove(item.getId());
+			}
+			for (Long id : deleted) {
+				current.remove(id);
+			}
+		}
+	}
+
+	private static String normalize(String name) {
+		return name.trim().toLowerCase(Locale.ROOT);
+	}
+
+	private static final class Index {
+		private final ConcurrentSkipListSet<Entry> entries = new ConcurrentSkipListSet<>();
+		private final ConcurrentHashMap<Long, Entry> byId = new ConcurrentHashMap<>();
+
+		private void put(ItemView item) {
+			Entry entry = new Entry(normalize(item.getName()), item.getId(), item);
+			Entry previous = byId.put(item.getId(), entry);
+			if (previous != null && previous.compareTo(entry) == 0) {
+				// same name, only the price changed
+				entries.remove(previous);
+				entries.add(entry);
+				return;
+			}
+			// add before removing so a concurrent search never misses a renamed item entirely
+			entries.add(entry);
+			if (previous != null) {
+				entries.remove(previous);
+			}
+		}
+
+		private void remove(Long id) {
+			Entry previous = byId.remove(id);
+			if (previous != null) {
+				entries.remove(previous);
+			}
+		}
+	}
+
+	private static final class Entry implements Comparable<Entry> {
+		private final String key;
+		private final long id;
+		private final ItemView item;
+
+		private Entry(String key, long id, ItemView item) {
+			this.key = key;
+			this.id = id;
+			this.item = item;
+		}
+
+		@Override
+		public int compareTo(Entry other) {
+			int byKey = key.compareTo(other.key);
+			return byKey != 0 ? byKey : Long.compare(id, other.id);
+		}
+	}
+}
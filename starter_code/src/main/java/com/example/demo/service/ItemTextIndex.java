@@ -0,0 +1,290 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.example.demo.model.responses.ItemView;
+
+/**
+ * In-memory inverted index over item names and descriptions, ranked with TF-IDF.
+ * <p>
+ * Every indexed item gets a document number in insertion order. Each term maps to a posting list of
+ * document numbers and term frequencies held in {@code int} arrays, so lists are always sorted and a
+ * query is a merge of its terms' lists. A changed item is indexed again under a new document number and
+ * its old document is only marked deleted; the index is rebuilt from the database once deleted documents
+ * make up a quarter of it.
+ */
+@Service
+public class ItemTextIndex {
+
+	private static final Logger log = LoggerFactory.getLogger(ItemTextIndex.class);
+
+	public static final int MAX_LIMIT = 50;
+
+	private static final int MIN_TERM_LENGTH = 2;
+
+	private static final int MIN_DELETED_BEFORE_REBUILD = 1024;
+
+	private final ItemRepository itemRepository;
+
+	private final TransactionTemplate readOnlyTransaction;
+
+	private volatile Index index = new Index();
+
+	// serialises writers, readers never block
+	private final Object writeLock = new Object();
+
+	public ItemTextIndex(ItemRepository itemRepository, PlatformTransactionManager transactionManager) {
+		this.itemRepository = itemRepository;
+		this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+		this.readOnlyTransaction.setReadOnly(true);
+	}
+
+	/**
+	 * @return up to {@code limit} items containing any of the query's words, best match first
+	 */
+	public List<ItemView> search(String query, int limit) {
+		int max = Math.max(1, Math.min(limit, MAX_LIMIT));
+		Index current = index;
+		List<Postings> lists = new ArrayList<>();
+		List<Double> idfs = new ArrayList<>();
+		for (String term : new HashSet<>(tokenize(query))) {
+			Postings postings = current.terms.get(term);
+			if (postings != null) {
+				lists.add(postings);
+				idfs.add(Math.log((double) (current.liveDocs + 1) / (postings.size + 1)) + 1);
+			}
+		}
+		if (lists.isEmpty()) {
+			return Collections.emptyList();
+		}
+		Doc[] docs = current.docs;
+		PriorityQueue<Hit> top = new PriorityQueue<>(max + 1);
+		int[] cursors = new int[lists.size()];
+		while (true) {
+			// the smallest document number not yet scored, over all lists
+			int doc = Integer.MAX_VALUE;
+			for (int i = 0; i < cursors.length; i++) {
+				Postings postings = lists.get(i);
+				if (cursors[i] < postings.size && postings.docs[cursors[i]] < doc) {
+					doc = postings.docs[cursors[i]];
+				}
+			}
+			if (doc == Integer.MAX_VALUE) {
+				break;
+			}
+			double score = 0;
+			for (int i = 0; i < cursors.length; i++) {
+				Postings postings = lists.get(i);
+				if (cursors[i] < postings.size && postings.docs[cursors[i]] == doc) {
+					score += (1 + Math.log(postings.freqs[cursors[i]])) * idfs.get(i);
+					cursors[i]++;
+				}
+			}
+			Doc document = docs[doc];
+			if (document == null) {
+				continue;
+			}
+			top.offer(new Hit(doc, score / Math.sqrt(document.length), document.item));
+			if (top.size() > max) {
+				top.poll();
+			}
+		}
+		List<Hit> hits = new ArrayList<>(top);
+		Collections.sort(hits, Collections.reverseOrder());
+		List<ItemView> items = new ArrayList<>(hits.size());
+		for (Hit hit : hits) {
+			items.add(hit.item);
+		}
+		return items;
+	}
+
+	public int size() {
+		return index.liveDocs;
+	}
+
+	/**
+	 * Replaces the index with one built from the whole catalog.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void rebuild() {
+		synchronized (writeLock) {
+			Index rebuilt = new Index();
+			readOnlyTransaction.execute(status -> {
+				try (Stream<ItemView> items = itemRepository.streamViewsWithDescription()) {
+					items.forEach(rebuilt::add);
+				}
+				return null;
+			});
+			index = rebuilt;
+			log.info("item text index built with " + rebuilt.liveDocs + " items and " + rebuilt.terms.size() + " terms");
+		}
+	}
+
+	@EventListener
+	public void onItemsChanged(ItemsChangedEvent event) {
+		if (event.isAll()) {
+			rebuild();
+			return;
+		}
+		Collection<Long> ids = event.getItemIds();
+		synchronized (writeLock) {
+			List<ItemView> items = readOnlyTransaction.execute(
+					status -> itemRepository.findViewsWithDescriptionByIdIn(ids));
+			Index current = index;
+			for (Long id : ids) {
+				current.delete(id);
+			}
+			for (ItemView item : items) {
+				current.add(item);
+			}
+			if (current.deletedDocs > Math.max(MIN_DELETED_BEFORE_REBUILD, current.docCount / 4)) {
+				rebuild();
+			}
+		}
+	}
+
+	static List<String> tokenize(String text) {
+		List<String> tokens = new ArrayList<>();
+		if (text == null) {
+			return tokens;
+		}
+		StringBuilder token = new StringBuilder();
+		for (int i = 0; i <= text.length(); i++) {
+			char c = i < text.length() ? text.charAt(i) : ' ';
+			if (Character.isLetterOrDigit(c)) {
+				token.append(Character.toLowerCase(c));
+			} else if (token.length() > 0) {
+				if (token.length() >= MIN_TERM_LENGTH) {
+					tokens.add(token.toString());
+				}
+				token.setLength(0);
+			}
+		}
+		return tokens;
+	}
+
+	/**
+	 * Only touched by writers holding the write lock. Readers see postings through the concurrent map and
+	 * documents through the volatile array; a posting is published after the document it points to.
+	 */
+	private static final class Index {
+		private final ConcurrentHashMap<String, Postings> terms = new ConcurrentHashMap<>();
+		private final Map<Long, Integer> docByItem = new HashMap<>();
+		private volatile Doc[] docs = new Doc[1024];
+		private int docCount;
+		private int deletedDocs;
+		private volatile int liveDocs;
+
+		private void add(ItemView item) {
+			Map<String, Integer> frequencies = new LinkedHashMap<>();
+			List<String> tokens = tokenize(item.getName());
+			tokens.addAll(tokenize(item.getDescription()));
+			for (String token : tokens) {
+				frequencies.merge(token, 1, Integer::sum);
+			}
+			int doc = docCount++;
+			if (doc == docs.length) {
+				docs = Arrays.copyOf(docs, docs.length * 2);
+			}
+			// descriptions are only needed for indexing, results leave them out
+			docs[doc] = new Doc(new ItemView(item.getId(), item.getName(), item.getPrice()), Math.max(1, tokens.size()));
+			docByItem.put(item.getId(), doc);
+			for (Map.Entry<String, Integer> frequency : frequencies.entrySet()) {
+				Postings postings = terms.get(frequency.getKey());
+				terms.put(frequency.getKey(), postings == null
+						? Postings.of(doc, frequency.getValue()) : postings.append(doc, frequency.getValue()));
+			}
+			liveDocs++;
+		}
+
+		private void delete(Long itemId) {
+			Integer doc = docByItem.remove(itemId);
+			if (doc != null) {
+				docs[doc] = null;
+				deletedDocs++;
+				liveDocs--;
+			}
+		}
+	}
+
+	/**
+	 * Sorted document numbers and frequencies of one term. Appending reuses the arrays while they have room,
+	 * so an instance never sees elements beyond its own {@code size}.
+	 */
+	private static final class Postings {
+		private final int[] docs;
+		private final int[] freqs;
+		private final int size;
+
+		private Postings(int[] docs, int[] freqs, int size) {
+			this.docs = docs;
+			this.freqs = freqs;
+			this.size = size;
+		}
+
+		private static Postings of(int doc, int freq) {
+			return new Postings(new int[] { doc, 0, 0, 0 }, new int[] { freq, 0, 0, 0 }, 1);
+		}
+
+		private Postings append(int doc, int freq) {
+			int[] newDocs = docs;
+			int[] newFreqs = freqs;
+			if (size == docs.length) {
+				newDocs = Arrays.copyOf(docs, size * 2);
+				newFreqs = Arrays.copyOf(freqs, size * 2);
+			}
+			newDocs[size] = doc;
+			newFreqs[size] = freq;
+			return new Postings(newDocs, newFreqs, size + 1);
+		}
+	}
+
+	private static final class Doc {
+		private final ItemView item;
+		private final int length;
+
+		private Doc(ItemView item, int length) {
+			this.item = item;
+			this.length = length;
+		}
+	}
+
+	private static final class Hit implements Comparable<Hit> {
+		private final int doc;
+		private final double score;
+		private final ItemView item;
+
+		private Hit(int doc, double score, ItemView item) {
+			this.doc = doc;
+			this.score = score;
+			this.item = item;
+		}
+
+		@Override
+		public int compareTo(Hit other) {
+			int byScore = Double.compare(score, other.score);
+			// on equal scores the older document ranks higher
+			return byScore != 0 ? byScore : Integer.compare(other.doc, doc);
+		}
+	}
+}
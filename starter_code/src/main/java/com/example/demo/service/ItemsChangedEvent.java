@@ -0,0 +1,38 @@
+package com.example.demo.service;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Published after items were inserted, updated or deleted so in-memory views of the catalog can catch up.
+ */
+public class ItemsChangedEvent {
+
+	private final Collection<Long> itemIds;
+
+	private ItemsChangedEvent(Collection<Long> itemIds) {
+		this.itemIds = itemIds;
+	}
+
+	public static ItemsChangedEvent of(Collection<Long> itemIds) {
+		return new ItemsChangedEvent(Collections.unmodifiableCollection(itemIds));
+	}
+
+	/**
+	 * For changes too broad to list, such as a bulk import.
+	 */
+	public static ItemsChangedEvent all() {
+		return new ItemsChangedEvent(null);
+	}
+
+	public boolean isAll() {
+		return itemIds == null;
+	}
+
+	/**
+	 * @return the changed ids, or {@code null} when everything may have changed
+	 */
+	public Collection<Long> getItemIds() {
+		return itemIds;
+	}
+}
@@ -0,0 +1,104 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.model.persistence.UserOrder;
+import com.example.demo.model.persistence.repositories.OrderRepository;
+import com.example.demo.model.responses.OrderHistoryPage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Reads a user's order history without holding all of it at once: pages are keyed on the last order id
+ * seen. The export walks the same kind of keyset pages, loading each page of orders with their lines in
+ * one statement and clearing it from the persistence context once written.
+ */
+@Service
+public class OrderHistoryService {
+
+	public static final int MAX_PAGE_SIZE = 100;
+
+	private static final int EXPORT_PAGE_SIZE = 100;
+
+	private static final byte[] NEWLINE = { '\n' };
+
+	private final OrderRepository orderRepository;
+
+	private final TransactionTemplate readOnlyTransaction;
+
+	private final ObjectMapper objectMapper;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	public OrderHistoryService(OrderRepository orderRepository, PlatformTransactionManager transactionManager,
+			ObjectMapper objectMapper) {
+		this.orderRepository = orderRepository;
+		this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+		this.readOnlyTransaction.setReadOnly(true);
+		this.objectMapper = objectMapper;
+	}
+
+	/**
+	 * @param afterId the {@code next} cursor of the previous page, or 0 for the first page
+	 * @param size    page size, capped at {@link #MAX_PAGE_SIZE}
+	 */
+	public OrderHistoryPage page(long userId, long afterId, int size) {
+		int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+		return readOnlyTransaction.execute(status -> {
+			// one extra row tells whether there is a next page without a count query
+			List<UserOrder> orders = orderRepository.findByUserIdAndIdGreaterThanOrderByIdAsc(userId, afterId,
+					PageRequest.of(0, pageSize + 1));
+			Long next = null;
+			if (orders.size() > pageSize) {
+				orders = orders.subList(0, pageSize);
+				next = orders.get(pageSize - 1).getId();
+			}
+			return new OrderHistoryPage(orders, next);
+		});
+	}
+
+	/**
+	 * Writes every order of the user as one JSON document per line.
+	 */
+	public void export(long userId, OutputStream out) throws IOException {
+		try {
+			readOnlyTransaction.execute(status -> {
+				long afterId = 0;
+				while (true) {
+					List<Long> ids = orderRepository.findIdsByUserIdAfter(userId, afterId,
+							PageRequest.of(0, EXPORT_PAGE_SIZE));
+					if (ids.isEmpty()) {
+						return null;
+					}
+					try {
+						for (UserOrder order : orderRepository.findWithLinesByIdIn(ids)) {
+							out.write(objectMapper.writeValueAsBytes(order));
+							out.write(NEWLINE);
+						}
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+					// written orders must not pile up in the persistence context
+					entityManager.clear();
+					if (ids.size() < EXPORT_PAGE_SIZE) {
+						return null;
+					}
+					afterId = ids.get(ids.size() - 1);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+}
@@ -0,0 +1,249 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.cache.ExpiringLruCache;
+import com.example.demo.model.persistence.UserOrder;
+import com.example.demo.model.persistence.repositories.OrderRepository;
+import com.example.demo.model.responses.OrderIntakeStatus;
+import com.example.demo.model.responses.OrderIntakeStatus.State;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Accepts orders into a bounded in-process queue and writes them on a single background thread, a batch
+ * per transaction, so the request thread never waits for the inserts. Every accepted order gets a
+ * reference that can be polled for its outcome. The writer starts once the bean is initialized, and
+ * intake stays closed until then. Shutdown stops intake and drains the queue before the repositories
+ * go away.
+ */
+@Component
+public class OrderIntakeService implements MeterBinder {
+
+	private static final Logger log = LoggerFactory.getLogger(OrderIntakeService.class);
+
+	private static final long POLL_MILLIS = 100;
+
+	private final OrderRepository orderRepository;
+
+	private final OrderSummaryService orderSummaryService;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final int batchSize;
+
+	private final long statusTimeToLiveSeconds;
+
+	private final BlockingQueue<PendingOrder> queue;
+
+	// accepted orders stay here until written, so their status cannot be evicted
+	private final ConcurrentHashMap<String, OrderIntakeStatus> pending = new ConcurrentHashMap<>();
+
+	private final ExpiringLruCache<String, OrderIntakeStatus> finished;
+
+	// intake holds the read side, shutdown takes the write side to close intake
+	private final ReadWriteLock intakeLock = new ReentrantReadWriteLock();
+
+	private final AtomicLong written = new AtomicLong();
+
+	private final AtomicLong failed = new AtomicLong();
+
+	private final Thread writer;
+
+	private volatile boolean accepting;
+
+	public OrderIntakeService(OrderRepository orderRepository, OrderSummaryService orderSummaryService,
+			PlatformTransactionManager transactionManager,
+			@Value("${order.intake.queue-capacity:10000}") int queueCapacity,
+			@Value("${order.intake.batch-size:100}") int batchSize,
+			@Value("${order.intake.status.maximum-size:100000}") int statusMaximumSize,
+			@Value("${order.intake.status.time-to-live-seconds:3600}") long statusTimeToLiveSeconds) {
+		this.orderRepository = orderRepository;
+		this.orderSummaryService = orderSummaryService;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.batchSize = batchSize;
+		this.statusTimeToLiveSeconds = statusTimeToLiveSeconds;
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		this.finished = new ExpiringLruCache<>(statusMaximumSize);
+		this.writer = new Thread(this::drain, "order-intake-writer");
+		this.writer.setDaemon(true);
+	}
+
+	/**
+	 * Opens intake and starts the writer.
+	 */
+	@PostConstruct
+	public void start() {
+		accepting = true;
+		writer.start();
+	}
+
+	/**
+	 * Queues the order for writing.
+	 *
+	 * @return the accepted status carrying the order's reference, or {@code null} when the queue is full
+	 *         or intake is not open
+	 */
+	public OrderIntakeStatus accept(UserOrder order) {
+		OrderIntakeStatus status = new OrderIntakeStatus(UUID.randomUUID().toString(),
+				order.getUser().getUsername(), State.ACCEPTED, null);
+		intakeLock.readLock().lock();
+		try {
+			if (!accepting) {
+				return null;
+			}
+			pending.put(status.getReference(), status);
+			if (!queue.offer(new PendingOrder(status, order))) {
+				pending.remove(status.getReference());
+				return null;
+			}
+			return status;
+		} finally {
+			intakeLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the order's current status, or {@code null} for an unknown or long finished reference
+	 */
+	public OrderIntakeStatus status(String reference) {
+		OrderIntakeStatus status = pending.get(reference);
+		return status != null ? status : finished.get(reference);
+	}
+
+	/**
+	 * Closes intake and waits for the writer to finish every accepted order.
+	 */
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		intakeLock.writeLock().lock();
+		try {
+			accepting = false;
+		} finally {
+			intakeLock.writeLock().unlock();
+		}
+		writer.join();
+	}
+
+	public int queueDepth() {
+		return queue.size();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder("order.intake.queue.depth", queue, BlockingQueue::size)
+				.description("Orders accepted but not yet written")
+				.register(registry);
+		FunctionCounter.builder("order.intake.written", written, AtomicLong::get)
+				.description("Orders written by the intake writer")
+				.register(registry);
+		FunctionCounter.builder("order.intake.failed", failed, AtomicLong::get)
+				.description("Accepted orders that could not be written")
+				.register(registry);
+		finished.bindTo(registry, "order.intake.statuses");
+	}
+
+	private void drain() {
+		List<PendingOrder> batch = new ArrayList<>(batchSize);
+		// keeps going after intake closes until the queue is empty; nothing is offered once accepting is false
+		while (accepting || !queue.isEmpty()) {
+			PendingOrder first;
+			try {
+				first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				// the queue must still be drained, so the interrupt only ends the wait
+				continue;
+			}
+			if (first == null) {
+				continue;
+			}
+			batch.add(first);
+			queue.drainTo(batch, batchSize - 1);
+			write(batch);
+			batch.clear();
+		}
+	}
+
+	private void write(List<PendingOrder> batch) {
+		try {
+			List<UserOrder> saved = transactionTemplate.execute(status -> {
+				List<UserOrder> orders = new ArrayList<>(batch.size());
+				for (PendingOrder pendingOrder : batch) {
+					orders.add(pendingOrder.order);
+				}
+				List<UserOrder> savedOrders = orderRepository.saveAll(orders);
+				savedOrders.forEach(orderSummaryService::record);
+				return savedOrders;
+			});
+			for (int i = 0; i < batch.size(); i++) {
+				complete(batch.get(i), saved.get(i));
+			}
+		} catch (RuntimeException e) {
+			log.warn("batched order write failed, writing orders one by one", e);
+			for (PendingOrder pendingOrder : batch) {
+				// ids handed out inside the rolled back transaction are void
+				pendingOrder.order.setId(null);
+				writeOne(pendingOrder);
+			}
+		}
+	}
+
+	private void writeOne(PendingOrder pendingOrder) {
+		try {
+			complete(pendingOrder, transactionTemplate.execute(status -> {
+				UserOrder saved = orderRepository.save(pendingOrder.order);
+				orderSummaryService.record(saved);
+				return saved;
+			}));
+		} catch (RuntimeException e) {
+			log.error("order " + pendingOrder.status.getReference() + " could not be written", e);
+			finish(pendingOrder, State.FAILED, null);
+			failed.incrementAndGet();
+		}
+	}
+
+	private void complete(PendingOrder pendingOrder, UserOrder saved) {
+		finish(pendingOrder, State.COMPLETED, saved.getId());
+		written.incrementAndGet();
+	}
+
+	private void finish(PendingOrder pendingOrder, State state, Long orderId) {
+		OrderIntakeStatus status = pendingOrder.status;
+		finished.put(status.getReference(),
+				new OrderIntakeStatus(status.getReference(), status.getUsername(), state, orderId),
+				statusTimeToLiveSeconds, TimeUnit.SECONDS);
+		pending.remove(status.getReference());
+	}
+
+	private static final class PendingOrder {
+		private final OrderIntakeStatus status;
+		private final UserOrder order;
+
+		private PendingOrder(OrderIntakeStatus status, UserOrder order) {
+			this.status = status;
+			this.order = order;
+		}
+	}
+}
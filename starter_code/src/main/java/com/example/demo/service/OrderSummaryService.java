@@ -0,0 +1,173 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.model.persistence.UserOrder;
+import com.example.demo.model.persistence.UserOrderSummary;
+import com.example.demo.model.persistence.repositories.OrderRepository;
+import com.example.demo.model.persistence.repositories.UserOrderSummaryRepository;
+
+/**
+ * Keeps each user's {@link UserOrderSummary} in step with their orders. Every order is added to the
+ * summary in the transaction that inserts it, with the summary row locked so concurrent orders of one
+ * user add up. A missing row is first created empty in a transaction of its own, so racing first orders
+ * of a user meet on one committed row instead of failing on its key. {@link #rebuild()} recomputes all
+ * summaries from the order tables, a chunk of users per transaction on a small pool of threads.
+ */
+@Service
+public class OrderSummaryService {
+
+	private static final Logger log = LoggerFactory.getLogger(OrderSummaryService.class);
+
+	private final OrderRepository orderRepository;
+
+	private final UserOrderSummaryRepository summaryRepository;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final TransactionTemplate newTransaction;
+
+	private final int rebuildThreads;
+
+	private final int rebuildChunkSize;
+
+	public OrderSummaryService(OrderRepository orderRepository, UserOrderSummaryRepository summaryRepository,
+			PlatformTransactionManager transactionManager,
+			@Value("${order.summary.rebuild-threads:4}") int rebuildThreads,
+			@Value("${order.summary.rebuild-chunk-size:500}") int rebuildChunkSize) {
+		this.orderRepository = orderRepository;
+		this.summaryRepository = summaryRepository;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.newTransaction = new TransactionTemplate(transactionManager);
+		this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		this.rebuildThreads = rebuildThreads;
+		this.rebuildChunkSize = rebuildChunkSize;
+	}
+
+	/**
+	 * Inserts the order and adds it to the user's summary in one transaction.
+	 */
+	public UserOrder save(UserOrder order) {
+		return transactionTemplate.execute(status -> {
+			orderRepository.save(order);
+			record(order);
+			return order;
+		});
+	}
+
+	/**
+	 * Adds an order that is being saved in the current transaction to its user's summary.
+	 */
+	public void record(UserOrder order) {
+		lockOrCreate(order.getUser().getId()).add(order);
+	}
+
+	/**
+	 * @return the user's summary, empty when the user has not ordered yet
+	 */
+	public UserOrderSummary find(long userId) {
+		return summaryRepository.findById(userId).orElseGet(() -> new UserOrderSummary(userId));
+	}
+
+	/**
+	 * Recomputes every summary from the order tables. Disabled unless {@code order.summary.rebuild-cron} is set.
+	 *
+	 * @return the number of users whose summary was rebuilt
+	 */
+	@Scheduled(cron = "${order.summary.rebuild-cron:-}")
+	public int rebuild() {
+		// users with a summary but no orders left are reset to empty
+		TreeSet<Long> allUserIds = new TreeSet<>(orderRepository.findUserIdsWithOrders());
+		allUserIds.addAll(summaryRepository.findAllUserIds());
+		List<Long> userIds = new ArrayList<>(allUserIds);
+		List<List<Long>> chunks = new ArrayList<>();
+		for (int from = 0; from < userIds.size(); from += rebuildChunkSize) {
+			chunks.add(userIds.subList(from, Math.min(from + rebuildChunkSize, userIds.size())));
+		}
+		log.info("rebuilding order summaries of " + userIds.size() + " users in " + chunks.size() + " chunks");
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(rebuildThreads, chunks.size())));
+		try {
+			List<Future<?>> results = new ArrayList<>();
+			for (List<Long> chunk : chunks) {
+				results.add(executor.submit(() -> rebuildChunk(chunk)));
+			}
+			for (Future<?> result : results) {
+				result.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("order summary rebuild was interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("order summary rebuild failed", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		log.info("order summaries rebuilt");
+		return userIds.size();
+	}
+
+	private void rebuildChunk(List<Long> userIds) {
+		transactionTemplate.execute(status -> {
+			// locking the existing rows first holds back orders of these users until the chunk commits
+			Map<Long, UserOrderSummary> summaries = new HashMap<>();
+			for (UserOrderSummary summary : summaryRepository.findAllForUpdate(userIds)) {
+				summaries.put(summary.getUserId(), summary);
+			}
+			Map<Long, Long> orderCounts = new HashMap<>();
+			for (Object[] row : orderRepository.countByUserIds(userIds)) {
+				orderCounts.put((Long) row[0], (Long) row[1]);
+			}
+			Map<Long, Long> spendCents = new HashMap<>();
+			Map<Long, Map<Long, Long>> itemQuantities = new HashMap<>();
+			for (Object[] row : orderRepository.sumLinesByUserIds(userIds)) {
+				Long userId = (Long) row[0];
+				itemQuantities.computeIfAbsent(userId, id -> new HashMap<>()).put((Long) row[1], (Long) row[2]);
+				spendCents.merge(userId, (Long) row[3], Long::sum);
+			}
+			for (Long userId : userIds) {
+				UserOrderSummary summary = summaries.get(userId);
+				if (summary == null) {
+					summary = lockOrCreate(userId);
+				}
+				summary.reset(orderCounts.getOrDefault(userId, 0L), spendCents.getOrDefault(userId, 0L),
+						itemQuantities.getOrDefault(userId, new HashMap<>()));
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * Locks the user's summary row for the current transaction, creating it empty first if it is missing.
+	 */
+	private UserOrderSummary lockOrCreate(long userId) {
+		UserOrderSummary summary = summaryRepository.findForUpdate(userId).orElse(null);
+		if (summary != null) {
+			return summary;
+		}
+		try {
+			newTransaction.execute(status -> summaryRepository.insertEmpty(userId));
+		} catch (DataIntegrityViolationException e) {
+			// a concurrent first order of the user created the row
+		}
+		return summaryRepository.findForUpdate(userId)
+				.orElseThrow(() -> new IllegalStateException("order summary of user " + userId + " was not created"));
+	}
+}
@@ -0,0 +1,130 @@
+package com.example.demo.service;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Checks at startup that the live schema has an index for each hot query path. An index counts when its
+ * leading columns are the expected ones, in order, so a primary key or unique constraint can provide it.
+ * The indexes themselves are created by the migrations in {@code db/migration}.
+ */
+@Component
+public class SchemaIndexVerifier {
+
+	private static final Logger log = LoggerFactory.getLogger(SchemaIndexVerifier.class);
+
+	public static final List<ExpectedIndex> EXPECTED_INDEXES = Collections.unmodifiableList(Arrays.asList(
+			new ExpectedIndex("item", "name", "id"),
+			new ExpectedIndex("item", "price", "id"),
+			new ExpectedIndex("user", "username"),
+			new ExpectedIndex("user", "cart_id"),
+			new ExpectedIndex("cart_line", "cart_id", "item_id"),
+			new ExpectedIndex("cart_line", "item_id"),
+			new ExpectedIndex("user_order", "user_id"),
+			new ExpectedIndex("user_order_line", "order_id"),
+			new ExpectedIndex("user_order_summary_item", "user_id")));
+
+	private final DataSource dataSource;
+
+	private final boolean failOnMissing;
+
+	public SchemaIndexVerifier(DataSource dataSource,
+			@Value("${schema.index-check.fail-on-missing:true}") boolean failOnMissing) {
+		this.dataSource = dataSource;
+		this.failOnMissing = failOnMissing;
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void verify() throws SQLException {
+		List<ExpectedIndex> missing = missingIndexes();
+		if (missing.isEmpty()) {
+			log.info("schema has all " + EXPECTED_INDEXES.size() + " expected indexes");
+			return;
+		}
+		for (ExpectedIndex index : missing) {
+			log.error("schema is missing an index on " + index);
+		}
+		if (failOnMissing) {
+			throw new IllegalStateException("schema is missing indexes on " + missing);
+		}
+	}
+
+	public List<ExpectedIndex> missingIndexes() throws SQLException {
+		List<ExpectedIndex> missing = new ArrayList<>();
+		try (Connection connection = dataSource.getConnection()) {
+			DatabaseMetaData metaData = connection.getMetaData();
+			for (ExpectedIndex expected : EXPECTED_INDEXES) {
+				if (!indexedColumns(metaData, expected.table).stream().anyMatch(expected::isCoveredBy)) {
+					missing.add(expected);
+				}
+			}
+		}
+		return missing;
+	}
+
+	/**
+	 * @return the column lists of the table's indexes, each in index order
+	 */
+	private static List<List<String>> indexedColumns(DatabaseMetaData metaData, String table) throws SQLException {
+		Map<String, Map<Short, String>> indexes = new TreeMap<>();
+		try (ResultSet rows = metaData.getIndexInfo(null, null, identifier(metaData, table), false, false)) {
+			while (rows.next()) {
+				String name = rows.getString("INDEX_NAME");
+				String column = rows.getString("COLUMN_NAME");
+				if (name != null && column != null) {
+					indexes.computeIfAbsent(name, n -> new TreeMap<>())
+							.put(rows.getShort("ORDINAL_POSITION"), column.toLowerCase(Locale.ROOT));
+				}
+			}
+		}
+		List<List<String>> columns = new ArrayList<>();
+		for (Map<Short, String> index : indexes.values()) {
+			columns.add(new ArrayList<>(index.values()));
+		}
+		return columns;
+	}
+
+	private static String identifier(DatabaseMetaData metaData, String name) throws SQLException {
+		if (metaData.storesUpperCaseIdentifiers()) {
+			return name.toUpperCase(Locale.ROOT);
+		}
+		return metaData.storesLowerCaseIdentifiers() ? name.toLowerCase(Locale.ROOT) : name;
+	}
+
+	public static final class ExpectedIndex {
+		private final String table;
+		private final List<String> columns;
+
+		private ExpectedIndex(String table, String... columns) {
+			this.table = table;
+			this.columns = Arrays.asList(columns);
+		}
+
+		private boolean isCoveredBy(List<String> indexColumns) {
+			return indexColumns.size() >= columns.size() && indexColumns.subList(0, columns.size()).equals(columns);
+		}
+
+		@Override
+		public String toString() {
+			return table + " " + columns;
+		}
+	}
+}
@@ -0,0 +1,256 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.repositories.CartRepository;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Opt-in in-memory home for active carts. Mutations are applied here and the affected carts are written
+ * to the database in batches on a timer, when an order is submitted and at shutdown, so a busy session
+ * costs one write per flush instead of one per request.
+ * <p>
+ * Each cart is published as an immutable snapshot: a mutation copies the current snapshot under the
+ * cart's lock, changes the copy and swaps it in, so readers never see a half-applied change.
+ */
+@Component
+public class WriteBehindCartStore implements MeterBinder {
+
+	private static final Logger log = LoggerFactory.getLogger(WriteBehindCartStore.class);
+
+	private final CartRepository cartRepository;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final boolean enabled;
+
+	private final int batchSize;
+
+	private final long idleMillis;
+
+	private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+
+	private final AtomicLong mutations = new AtomicLong();
+
+	private final AtomicLong flushes = new AtomicLong();
+
+	public WriteBehindCartStore(CartRepository cartRepository, PlatformTransactionManager transactionManager,
+			@Value("${cart.write-behind.enabled:false}") boolean enabled,
+			@Value("${cart.write-behind.batch-size:100}") int batchSize,
+			@Value("${cart.write-behind.idle-eviction-ms:600000}") long idleMillis) {
+		this.cartRepository = cartRepository;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.enabled = enabled;
+		this.batchSize = batchSize;
+		this.idleMillis = idleMillis;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @return the buffered snapshot of the cart, or {@code null} when the cart is not held here
+	 */
+	public Cart get(Long cartId) {
+		Entry entry = entries.get(cartId);
+		if (entry == null) {
+			return null;
+		}
+		entry.lastAccess = System.currentTimeMillis();
+		return entry.snapshot;
+	}
+
+	/**
+	 * Applies the mutation to the buffered cart, seeding the buffer with {@code loaded} the first time the
+	 * cart is seen. The database is not touched.
+	 *
+	 * @return the new snapshot
+	 */
+	public Cart update(Cart loaded, Consumer<Cart> mutation) {
+		while (true) {
+			Entry entry = entries.computeIfAbsent(loaded.getId(), id -> new Entry(loaded));
+			entry.lock.lock();
+			try {
+				if (entry.evicted) {
+					continue;
+				}
+				Cart next = entry.snapshot.copy();
+				mutation.accept(next);
+				next.markUnflushedChange();
+				entry.snapshot = next;
+				entry.dirty = true;
+				entry.lastAccess = System.currentTimeMillis();
+				mutations.incrementAndGet();
+				return next;
+			} finally {
+				entry.lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Writes the cart's pending changes, if any, before returning.
+	 *
+	 * @return the persisted snapshot, or {@code cart} itself when it is not held here
+	 */
+	public Cart flush(Cart cart) {
+		Entry entry = entries.get(cart.getId());
+		if (entry == null) {
+			return cart;
+		}
+		entry.lock.lock();
+		try {
+			if (entry.dirty) {
+				flushOne(entry);
+			}
+			return entry.snapshot;
+		} finally {
+			entry.lock.unlock();
+		}
+	}
+
+	@Scheduled(fixedDelayString = "${cart.write-behind.flush-interval-ms:5000}")
+	public void flushDirty() {
+		if (!enabled) {
+			return;
+		}
+		flushAll();
+		evictIdle();
+	}
+
+	@PreDestroy
+	public void flushAll() {
+		List<Long> dirtyIds = new ArrayList<>();
+		entries.forEach((id, entry) -> {
+			if (entry.dirty) {
+				dirtyIds.add(id);
+			}
+		});
+		// locks are always taken in id order, so concurrent flushes cannot deadlock
+		Collections.sort(dirtyIds);
+		for (int from = 0; from < dirtyIds.size(); from += batchSize) {
+			flushBatch(dirtyIds.subList(from, Math.min(from + batchSize, dirtyIds.size())));
+		}
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		FunctionCounter.builder("cart.write-behind.mutations", mutations, AtomicLong::get)
+				.description("Cart mutations applied in memory")
+				.register(registry);
+		FunctionCounter.builder("cart.write-behind.flushes", flushes, AtomicLong::get)
+				.description("Carts written to the database")
+				.register(registry);
+		Gauge.builder("cart.write-behind.carts", entries, ConcurrentHashMap::size)
+				.description("Carts held in memory")
+				.register(registry);
+	}
+
+	private void flushBatch(List<Long> cartIds) {
+		List<Entry> locked = new ArrayList<>();
+		try {
+			for (Long cartId : cartIds) {
+				Entry entry = entries.get(cartId);
+				if (entry != null) {
+					entry.lock.lock();
+					locked.add(entry);
+				}
+			}
+			try {
+				List<Cart> saved = transactionTemplate.execute(status -> {
+					List<Cart> result = new ArrayList<>();
+					for (Entry entry : locked) {
+						result.add(entry.dirty ? cartRepository.save(entry.snapshot) : entry.snapshot);
+					}
+					return result;
+				});
+				for (int i = 0; i < locked.size(); i++) {
+					Entry entry = locked.get(i);
+					if (entry.dirty) {
+						entry.snapshot = saved.get(i);
+						entry.dirty = false;
+						flushes.incrementAndGet();
+					}
+				}
+			} catch (RuntimeException e) {
+				log.warn("batched cart flush failed, flushing carts one by one", e);
+				for (Entry entry : locked) {
+					if (entry.dirty) {
+						flushOneOrDrop(entry);
+					}
+				}
+			}
+		} finally {
+			for (Entry entry : locked) {
+				entry.lock.unlock();
+			}
+		}
+	}
+
+	private void flushOne(Entry entry) {
+		entry.snapshot = transactionTemplate.execute(status -> cartRepository.save(entry.snapshot));
+		entry.dirty = false;
+		flushes.incrementAndGet();
+	}
+
+	private void flushOneOrDrop(Entry entry) {
+		try {
+			flushOne(entry);
+		} catch (RuntimeException e) {
+			// the buffered copy can no longer be written, the database keeps the last state that was
+			log.error("cart " + entry.snapshot.getId() + " could not be flushed, dropping its buffered changes", e);
+			entry.evicted = true;
+			entries.remove(entry.snapshot.getId(), entry);
+		}
+	}
+
+	private void evictIdle() {
+		long idleSince = System.currentTimeMillis() - idleMillis;
+		entries.forEach((id, entry) -> {
+			if (entry.lastAccess < idleSince && entry.lock.tryLock()) {
+				try {
+					if (!entry.dirty && entry.lastAccess < idleSince) {
+						entry.evicted = true;
+						entries.remove(id, entry);
+					}
+				} finally {
+					entry.lock.unlock();
+				}
+			}
+		});
+	}
+
+	private static final class Entry {
+		private final ReentrantLock lock = new ReentrantLock();
+		private volatile Cart snapshot;
+		private volatile boolean dirty;
+		private volatile boolean evicted;
+		private volatile long lastAccess = System.currentTimeMillis();
+
+		private Entry(Cart snapshot) {
+			this.snapshot = snapshot;
+		}
+	}
+}
@@ -0,0 +1,88 @@
+-- Tables and sequences as mapped by the entities in com.example.demo.model.persistence.
+-- Entity ids are drawn from sequences in blocks of 50, see the @SequenceGenerator mappings.
+-- Foreign keys on columns that hot queries filter by are added after a named index on those columns,
+-- so H2 backs the constraint with that index instead of creating an unnamed one of its own.
+
+create sequence item_seq start with 1 increment by 50;
+create sequence cart_seq start with 1 increment by 50;
+create sequence cart_line_seq start with 1 increment by 50;
+create sequence user_seq start with 1 increment by 50;
+create sequence user_order_seq start with 1 increment by 50;
+
+create table item (
+    id bigint not null,
+    name varchar(255) not null,
+    price decimal(19, 2) not null,
+    description varchar(255) not null,
+    primary key (id)
+);
+
+create table cart (
+    id bigint not null,
+    total decimal(19, 2),
+    version bigint,
+    primary key (id)
+);
+
+create table cart_line (
+    id bigint not null,
+    cart_id bigint not null,
+    item_id bigint not null,
+    quantity integer not null,
+    primary key (id),
+    constraint uk_cart_line_cart_item unique (cart_id, item_id),
+    constraint fk_cart_line_cart foreign key (cart_id) references cart (id)
+);
+
+-- finding the cart lines that reference an item
+create index idx_cart_line_item_id on cart_line (item_id);
+alter table cart_line add constraint fk_cart_line_item foreign key (item_id) references item (id);
+
+create table user (
+    id bigint not null,
+    username varchar(255) not null,
+    password varchar(255) not null,
+    cart_id bigint,
+    primary key (id),
+    constraint uk_user_username unique (username)
+);
+
+-- CartRepository.findByUser, and loading a cart's user
+create index idx_user_cart_id on user (cart_id);
+alter table user add constraint fk_user_cart foreign key (cart_id) references cart (id);
+
+create table user_order (
+    id bigint not null,
+    user_id bigint not null,
+    total decimal(19, 2),
+    primary key (id)
+);
+
+-- OrderRepository.findByUser, findByUserId and the order history pages
+create index idx_user_order_user_id on user_order (user_id);
+alter table user_order add constraint fk_user_order_user foreign key (user_id) references user (id);
+
+create table user_order_line (
+    order_id bigint not null,
+    line_index integer not null,
+    item_id bigint not null,
+    quantity integer not null,
+    unit_price_cents bigint not null,
+    primary key (order_id, line_index),
+    constraint fk_user_order_line_order foreign key (order_id) references user_order (id)
+);
+
+create table user_order_summary (
+    user_id bigint not null,
+    order_count bigint not null,
+    total_spend_cents bigint not null,
+    primary key (user_id)
+);
+
+create table user_order_summary_item (
+    user_id bigint not null,
+    item_id bigint not null,
+    quantity bigint not null,
+    primary key (user_id, item_id),
+    constraint fk_user_order_summary_item_summary foreign key (user_id) references user_order_summary (user_id)
+);
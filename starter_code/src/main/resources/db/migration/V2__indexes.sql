@@ -0,0 +1,9 @@
+-- Secondary indexes for the hot repository methods. The indexes that back foreign keys are created
+-- with their constraints in V1. SchemaIndexVerifier checks at startup that all of them exist; keep the
+-- migrations and its list in step.
+
+-- ItemRepository.findByName, and the item listing sorted by name
+create index idx_item_name_id on item (name, id);
+
+-- the item listing sorted by price
+create index idx_item_price_id on item (price, id);
@@ -0,0 +1,8 @@
+-- Sample catalog for development.
+
+insert into item (id, name, price, description) values (1, 'Round Widget', 2.99, 'A widget that is round');
+insert into item (id, name, price, description) values (2, 'Square Widget', 1.99, 'A widget that is square');
+
+-- The pooled optimizer treats a sequence value n as reserving the block n-49..n, so the first value
+-- handed out must sit at least 50 above the highest seeded id.
+alter sequence item_seq restart with 101;
@@ -0,0 +1,3 @@
+-- Items are versioned so the entity tag of a cart changes when an item on it is edited.
+
+alter table item add column version bigint default 0 not null;
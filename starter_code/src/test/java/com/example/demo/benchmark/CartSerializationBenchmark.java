@@ -0,0 +1,80 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.User;
+import com.example.demo.model.responses.CartResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Serialisation time and payload size of a 1,000-line cart, as the JPA entity and as {@link CartResponse}.
+ * Benchmarks are not picked up by the default test run; run with
+ * {@code mvn -Dtest=CartSerializationBenchmark test}.
+ */
+public class CartSerializationBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(CartSerializationBenchmark.class);
+
+    private static final int LINES = 1_000;
+    private static final int UNITS_PER_LINE = 3;
+    private static final int WARMUP = 200;
+    private static final int ITERATIONS = 1_000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void serialise_1000_line_cart() throws Exception{
+        Cart cart = cart();
+
+        byte[] entityJson = objectMapper.writeValueAsBytes(cart);
+        byte[] responseJson = objectMapper.writeValueAsBytes(CartResponse.from(cart));
+        long entityNanos = time(() -> objectMapper.writeValueAsBytes(cart));
+        long responseNanos = time(() -> objectMapper.writeValueAsBytes(CartResponse.from(cart)));
+
+        log.info("entity:   {} bytes, {} us per cart", entityJson.length, entityNanos / 1_000);
+        log.info("response: {} bytes, {} us per cart", responseJson.length, responseNanos / 1_000);
+        // one entry per line instead of one full item per unit
+        assertTrue(responseJson.length < entityJson.length);
+    }
+
+    private long time(Serialisation serialisation) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            serialisation.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            serialisation.run();
+        }
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+
+    private static Cart cart() {
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("benchmark");
+        user.setPassword("password");
+        Cart cart = new Cart();
+        cart.setId(1L);
+        cart.setUser(user);
+        user.setCart(cart);
+        for (long id = 1; id <= LINES; id++) {
+            Item item = new Item();
+            item.setId(id);
+            item.setName("Item " + id);
+            item.setPrice(new BigDecimal("9.99"));
+            item.setDescription("A description long enough to look like a real catalog entry for item " + id);
+            cart.addItem(item, UNITS_PER_LINE);
+        }
+        return cart;
+    }
+
+    private interface Serialisation {
+        void run() throws Exception;
+    }
+}
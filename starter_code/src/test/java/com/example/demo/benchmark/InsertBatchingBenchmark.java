@@ -0,0 +1,110 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.OrderLine;
+import com.example.demo.model.persistence.User;
+import com.example.demo.model.persistence.UserOrder;
+import com.example.demo.model.persistence.repositories.OrderRepository;
+import com.example.demo.model.persistence.repositories.UserRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Inserts per second for bulk user creation and batched order submission, 100 entities per transaction
+ * like the order intake writer, with the number of JDBC statements Hibernate prepared for them. Run it on
+ * a tree with identity ids for the numbers before sequence generators. Benchmarks are not picked up by
+ * the default test run; run with {@code mvn -Dtest=InsertBatchingBenchmark test}.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class InsertBatchingBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(InsertBatchingBenchmark.class);
+
+    private static final int USERS = 20_000;
+    private static final int ORDERS = 20_000;
+    private static final int PER_TRANSACTION = 100;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @Before
+    public void setup() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @Test
+    public void insert_users_and_orders() throws Exception{
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        String prefix = "batching-" + System.nanoTime() + "-";
+
+        statistics.clear();
+        long start = System.nanoTime();
+        User owner = null;
+        for (int i = 0; i < USERS; i += PER_TRANSACTION) {
+            List<User> users = new ArrayList<>(PER_TRANSACTION);
+            for (int j = i; j < i + PER_TRANSACTION; j++) {
+                User user = new User();
+                user.setUsername(prefix + j);
+                user.setPassword("password");
+                user.setCart(new Cart());
+                users.add(user);
+            }
+            List<User> saved = transaction.execute(status -> userRepository.saveAll(users));
+            owner = saved.get(0);
+        }
+        report("users", USERS, System.nanoTime() - start);
+
+        statistics.clear();
+        start = System.nanoTime();
+        for (int i = 0; i < ORDERS; i += PER_TRANSACTION) {
+            List<UserOrder> orders = new ArrayList<>(PER_TRANSACTION);
+            for (int j = 0; j < PER_TRANSACTION; j++) {
+                UserOrder order = new UserOrder();
+                order.setUser(owner);
+                order.setLines(new ArrayList<>(Arrays.asList(new OrderLine(1, 2, 299), new OrderLine(2, 1, 199))));
+                order.setTotal(new BigDecimal("7.97"));
+                orders.add(order);
+            }
+            transaction.execute(status -> orderRepository.saveAll(orders));
+        }
+        report("orders", ORDERS, System.nanoTime() - start);
+        // inserts go out in JDBC batches, not one statement per row
+        assertTrue(statistics.getPrepareStatementCount() < statistics.getEntityInsertCount());
+    }
+
+    private void report(String what, int count, long nanos) {
+        log.info("{}: {} inserts/s, {} entity inserts in {} prepared statements", what,
+                count * 1_000_000_000L / nanos, statistics.getEntityInsertCount(),
+                statistics.getPrepareStatementCount());
+    }
+}
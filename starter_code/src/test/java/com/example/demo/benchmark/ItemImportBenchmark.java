@@ -0,0 +1,84 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.example.demo.model.responses.ItemImportResult;
+import com.example.demo.service.ItemImportService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Loads 200k items through the streaming {@link ItemImportService} and through row-by-row
+ * {@code itemRepository.save}. The feed is generated as it is read, so neither side holds it in memory.
+ * Benchmarks are not picked up by the default test run; run with {@code mvn -Dtest=ItemImportBenchmark test}.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class ItemImportBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(ItemImportBenchmark.class);
+
+    private static final int ROWS = 200_000;
+
+    @Autowired
+    private ItemImportService itemImportService;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Test
+    public void import_200k_items() throws Exception{
+        long start = System.nanoTime();
+        ItemImportResult result = itemImportService.importItems(feed(), ItemImportService.Format.CSV);
+        long importNanos = System.nanoTime() - start;
+        assertEquals(ROWS, result.getInserted());
+
+        start = System.nanoTime();
+        for (int i = 0; i < ROWS; i++) {
+            Item item = new Item();
+            item.setName("Saved " + i);
+            item.setPrice(BigDecimal.ONE);
+            item.setDescription("Description of saved item " + i);
+            itemRepository.save(item);
+        }
+        long saveNanos = System.nanoTime() - start;
+
+        log.info("streaming import: {} ms, {} rows/s", importNanos / 1_000_000,
+                ROWS * 1_000_000_000L / importNanos);
+        log.info("row-by-row save:  {} ms, {} rows/s", saveNanos / 1_000_000,
+                ROWS * 1_000_000_000L / saveNanos);
+    }
+
+    private static InputStream feed() {
+        Enumeration<InputStream> lines = new Enumeration<InputStream>() {
+            private int row = -1;
+
+            @Override
+            public boolean hasMoreElements() {
+                return row < ROWS;
+            }
+
+            @Override
+            public InputStream nextElement() {
+                String line = row < 0 ? "name,price,description\n"
+                        : "Imported " + row + ",1.00,\"Description of imported item " + row + "\"\n";
+                row++;
+                return new ByteArrayInputStream(line.getBytes(StandardCharsets.UTF_8));
+            }
+        };
+        return new SequenceInputStream(lines);
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.example.demo.model.responses.ItemView;
+import com.example.demo.service.ItemNameIndex;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.stream.LongStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Top-10 prefix lookups on a catalog of 1M items: the in-memory {@link ItemNameIndex} against an indexed
+ * {@code LIKE 'x%'} query on H2. Benchmarks are not picked up by the default test run; run with
+ * {@code mvn -Dtest=ItemPrefixSearchBenchmark test}.
+ */
+public class ItemPrefixSearchBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(ItemPrefixSearchBenchmark.class);
+
+    private static final int ITEMS = 1_000_000;
+    private static final int LIMIT = 10;
+    private static final int WARMUP = 2_000;
+    private static final int ITERATIONS = 10_000;
+
+    @Test
+    public void prefix_search_1m_items() throws Exception{
+        ItemRepository itemRepository = mock(ItemRepository.class);
+        when(itemRepository.streamViews()).thenReturn(LongStream.rangeClosed(1, ITEMS)
+                .mapToObj(id -> new ItemView(id, name(id), BigDecimal.ONE)));
+        ItemNameIndex index = new ItemNameIndex(itemRepository, mock(PlatformTransactionManager.class));
+        index.rebuild();
+
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:prefix-benchmark", "sa", "")) {
+            load(connection);
+            try (PreparedStatement query = connection.prepareStatement(
+                    "select id, name, price from item where name like ? order by name limit " + LIMIT)) {
+                long indexNanos = time(prefix -> index.search(prefix, LIMIT).size());
+                long likeNanos = time(prefix -> {
+                    query.setString(1, prefix + "%");
+                    int rows = 0;
+                    try (ResultSet resultSet = query.executeQuery()) {
+                        while (resultSet.next()) {
+                            rows++;
+                        }
+                    }
+                    return rows;
+                });
+                log.info("name index: {} ns per lookup", indexNanos);
+                log.info("like query: {} ns per lookup", likeNanos);
+                assertEquals(LIMIT, index.search("item 1", LIMIT).size());
+            }
+        }
+    }
+
+    private static void load(Connection connection) throws Exception {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("create table item (id bigint primary key, name varchar(255) not null, price decimal(19, 2))");
+            statement.execute("create index item_name on item (name)");
+        }
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement("insert into item values (?, ?, ?)")) {
+            for (long id = 1; id <= ITEMS; id++) {
+                insert.setLong(1, id);
+                // lower case so the case-sensitive LIKE finds the same rows as the index
+                insert.setString(2, name(id).toLowerCase());
+                insert.setBigDecimal(3, BigDecimal.ONE);
+                insert.addBatch();
+                if (id % 10_000 == 0) {
+                    insert.executeBatch();
+                }
+            }
+        }
+        connection.commit();
+    }
+
+    private static String name(long id) {
+        return "Item " + id;
+    }
+
+    private long time(Lookup lookup) throws Exception {
+        Random random = new Random(42);
+        for (int i = 0; i < WARMUP; i++) {
+            lookup.run("item " + (1 + random.nextInt(ITEMS / 10)));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            lookup.run("item " + (1 + random.nextInt(ITEMS / 10)));
+        }
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+
+    private interface Lookup {
+        int run(String prefix) throws Exception;
+    }
+}
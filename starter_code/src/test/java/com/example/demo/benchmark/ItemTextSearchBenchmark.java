@@ -0,0 +1,77 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.example.demo.model.responses.ItemView;
+import com.example.demo.service.ItemTextIndex;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.stream.LongStream;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Ranked two-word queries on an {@link ItemTextIndex} of 1M items with generated descriptions.
+ * Benchmarks are not picked up by the default test run; run with
+ * {@code mvn -Dtest=ItemTextSearchBenchmark test}.
+ */
+public class ItemTextSearchBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(ItemTextSearchBenchmark.class);
+
+    private static final int ITEMS = 1_000_000;
+    private static final int WORDS_PER_DESCRIPTION = 12;
+    private static final int VOCABULARY = 20_000;
+    private static final int WARMUP = 500;
+    private static final int ITERATIONS = 2_000;
+
+    @Test
+    public void text_search_1m_items() throws Exception{
+        ItemRepository itemRepository = mock(ItemRepository.class);
+        when(itemRepository.streamViewsWithDescription()).thenReturn(LongStream.rangeClosed(1, ITEMS)
+                .mapToObj(ItemTextSearchBenchmark::item));
+        ItemTextIndex index = new ItemTextIndex(itemRepository, mock(PlatformTransactionManager.class));
+        long buildStart = System.nanoTime();
+        index.rebuild();
+        log.info("build: {} ms for {} items", (System.nanoTime() - buildStart) / 1_000_000, ITEMS);
+
+        Random random = new Random(42);
+        for (int i = 0; i < WARMUP; i++) {
+            index.search(query(random), 10);
+        }
+        long worst = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            long queryStart = System.nanoTime();
+            index.search(query(random), 10);
+            worst = Math.max(worst, System.nanoTime() - queryStart);
+        }
+        long average = (System.nanoTime() - start) / ITERATIONS;
+        log.info("query: {} us average, {} us worst", average / 1_000, worst / 1_000);
+        assertTrue(index.search("w1 w2", 10).size() > 0);
+    }
+
+    private static ItemView item(long id) {
+        // a skewed vocabulary, so some words are in a large share of the catalog
+        Random random = new Random(id);
+        StringBuilder description = new StringBuilder();
+        for (int i = 0; i < WORDS_PER_DESCRIPTION; i++) {
+            description.append('w').append(word(random)).append(' ');
+        }
+        return new ItemView(id, "Item " + id, BigDecimal.ONE, description.toString());
+    }
+
+    private static String query(Random random) {
+        return "w" + word(random) + " w" + word(random);
+    }
+
+    private static int word(Random random) {
+        double skewed = Math.pow(random.nextDouble(), 3);
+        return (int) (skewed * VOCABULARY);
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.controllers.CartController;
+import com.example.demo.controllers.OrderController;
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.OrderLine;
+import com.example.demo.model.persistence.User;
+import com.example.demo.model.persistence.UserOrder;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.example.demo.model.persistence.repositories.OrderRepository;
+import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.model.requests.ModifyCartRequest;
+import com.example.demo.security.UserPrincipal;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JDBC statements and time per request for the cart and order endpoints, called once with a token that
+ * carries the user and cart ids and once with a token that does not. Without the ids the endpoints take
+ * the username lookups every request made before the ids were signed into the token, so those are the
+ * numbers before. Benchmarks are not picked up by the default test run; run with
+ * {@code mvn -Dtest=QueriesPerRequestBenchmark test}.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class QueriesPerRequestBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(QueriesPerRequestBenchmark.class);
+
+    private static final int LINES = 10;
+    private static final int ORDERS = 10;
+    private static final int WARMUP = 200;
+    private static final int REQUESTS = 2_000;
+
+    @Autowired
+    private CartController cartController;
+
+    @Autowired
+    private OrderController orderController;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @Before
+    public void setup() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @Test
+    public void queries_per_request_with_and_without_token_claims() throws Exception{
+        User user = userWithCartAndOrders();
+        UserPrincipal withoutIds = new UserPrincipal(user.getUsername(), null, null);
+        UserPrincipal withIds = new UserPrincipal(user.getUsername(), user.getId(), user.getCart().getId());
+        ModifyCartRequest add = new ModifyCartRequest();
+        add.setUsername(user.getUsername());
+        add.setItemId(user.getCart().getLines().keySet().iterator().next());
+        add.setQuantity(1);
+
+        Map<String, Request> requests = new LinkedHashMap<>();
+        requests.put("GET /api/cart", principal -> cartController.getCart(principal, null));
+        requests.put("POST /api/cart/addToCart", principal -> cartController.addTocart(add, principal));
+        requests.put("GET /api/order/history",
+                principal -> orderController.getOrdersForUser(user.getUsername(), principal));
+        requests.put("GET /api/order/history/page",
+                principal -> orderController.getOrderPageForUser(user.getUsername(), 0, 20, principal));
+
+        long before = 0;
+        long after = 0;
+        for (Map.Entry<String, Request> request : requests.entrySet()) {
+            long[] withoutIdsCost = measure(request.getValue(), withoutIds);
+            long[] withIdsCost = measure(request.getValue(), withIds);
+            log.info("{}: before {} statements, {} us per request; after {} statements, {} us per request",
+                    request.getKey(), perRequest(withoutIdsCost[0]), withoutIdsCost[1] / REQUESTS / 1_000,
+                    perRequest(withIdsCost[0]), withIdsCost[1] / REQUESTS / 1_000);
+            before += withoutIdsCost[0];
+            after += withIdsCost[0];
+        }
+        log.info("all: before {} statements per request, after {}", perRequest(before) / requests.size(),
+                perRequest(after) / requests.size());
+        // the ids in the token replace lookups, they never add any
+        assertTrue(after < before);
+    }
+
+    /**
+     * @return the statements prepared and the nanoseconds spent for {@link #REQUESTS} requests
+     */
+    private long[] measure(Request request, UserPrincipal principal) {
+        for (int i = 0; i < WARMUP; i++) {
+            request.send(principal);
+        }
+        statistics.clear();
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            assertEquals(200, request.send(principal).getStatusCodeValue());
+        }
+        return new long[] { statistics.getPrepareStatementCount(), System.nanoTime() - start };
+    }
+
+    private static double perRequest(long statements) {
+        return (double) statements / REQUESTS;
+    }
+
+    private User userWithCartAndOrders() {
+        Cart cart = new Cart();
+        List<OrderLine> lines = new ArrayList<>();
+        for (int i = 0; i < LINES; i++) {
+            Item item = new Item();
+            item.setName("Benchmarked " + i);
+            item.setPrice(BigDecimal.ONE);
+            item.setDescription("description");
+            item = itemRepository.save(item);
+            cart.addItem(item);
+            lines.add(new OrderLine(item.getId(), 1, 100));
+        }
+        User user = new User();
+        user.setUsername("queries-" + System.nanoTime());
+        user.setPassword("password");
+        user.setCart(cart);
+        user = userRepository.save(user);
+        List<UserOrder> orders = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            UserOrder order = new UserOrder();
+            order.setUser(user);
+            order.setLines(new ArrayList<>(lines));
+            order.setTotal(BigDecimal.valueOf(LINES));
+            orders.add(order);
+        }
+        orderRepository.saveAll(orders);
+        return user;
+    }
+
+    private interface Request {
+        ResponseEntity<?> send(UserPrincipal principal);
+    }
+}
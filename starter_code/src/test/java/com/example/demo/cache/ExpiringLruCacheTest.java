@@ -0,0 +1,76 @@
+package com.example.demo.cache;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ExpiringLruCacheTest {
+    private final AtomicLong now = new AtomicLong(1_000_000L);
+
+    private ExpiringLruCache<String, String> cache;
+
+    @Before
+    public void setup() {
+        cache = new ExpiringLruCache<>(2, now::get);
+    }
+
+    @Test
+    public void least_recently_used_entry_is_evicted() throws Exception{
+        cache.put("a", "A", 1, TimeUnit.MINUTES);
+        cache.put("b", "B", 1, TimeUnit.MINUTES);
+        // reading a makes b the least recently used
+        assertEquals("A", cache.get("a"));
+        cache.put("c", "C", 1, TimeUnit.MINUTES);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.evictionCount());
+        assertNull(cache.get("b"));
+        assertEquals("A", cache.get("a"));
+        assertEquals("C", cache.get("c"));
+    }
+
+    @Test
+    public void entries_expire_at_their_own_time() throws Exception{
+        cache.put("short", "S", 10, TimeUnit.SECONDS);
+        cache.put("long", "L", now.get() + 60_000);
+        now.addAndGet(9_999);
+        assertEquals("S", cache.get("short"));
+        now.addAndGet(1);
+        // expired entries are gone, and dropped from the cache on lookup
+        assertNull(cache.get("short"));
+        assertEquals(1, cache.size());
+        assertEquals("L", cache.get("long"));
+        // values that are already expired are not stored
+        cache.put("stale", "X", now.get());
+        assertNull(cache.get("stale"));
+    }
+
+    @Test
+    public void hits_and_misses_are_counted() throws Exception{
+        cache.put("a", "A", 1, TimeUnit.MINUTES);
+        cache.get("a");
+        cache.get("a");
+        cache.get("missing");
+        now.addAndGet(60_000);
+        // an expired entry counts as a miss
+        cache.get("a");
+        assertEquals(2, cache.hitCount());
+        assertEquals(2, cache.missCount());
+    }
+
+    @Test
+    public void put_if_absent_keeps_the_live_value() throws Exception{
+        assertNull(cache.putIfAbsent("a", "first", 1, TimeUnit.MINUTES));
+        assertEquals("first", cache.putIfAbsent("a", "second", 1, TimeUnit.MINUTES));
+        now.addAndGet(60_000);
+        // once expired the key is free again
+        assertNull(cache.putIfAbsent("a", "third", 1, TimeUnit.MINUTES));
+        assertEquals("third", cache.get("a"));
+        assertEquals(2, cache.hitCount());
+        assertEquals(2, cache.missCount());
+    }
+}
@@ -8,18 +8,36 @@ import com.example.demo.model.persistence.repositories.CartRepository;
 import com.example.demo.model.persistence.repositories.ItemRepository;
 import com.example.demo.model.persistence.repositories.UserRepository;
 import com.example.demo.model.requests.CreateUserRequest;
+import com.example.demo.model.requests.CartLineOperation;
+import com.example.demo.model.requests.ModifyCartBatchRequest;
 import com.example.demo.model.requests.ModifyCartRequest;
+import com.example.demo.model.responses.CartResponse;
+import com.example.demo.model.responses.ModifyCartBatchResponse;
+import com.example.demo.security.UserPrincipal;
+import com.example.demo.service.CartService;
+import com.example.demo.service.ItemCatalog;
+import com.example.demo.service.WriteBehindCartStore;
 import org.junit.Before;
 import org.junit.Test;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Optional;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class CartControllerTest {
@@ -30,10 +48,14 @@ public class CartControllerTest {
 
     @Before
     public void setup() {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        CartService cartService = new CartService(cartRepository, userRepository, transactionManager,
+                new WriteBehindCartStore(cartRepository, transactionManager, false, 100, 600000), 5, false, 64);
+        // like a JPA save, hand back the saved cart
+        when(cartRepository.save(any(Cart.class))).thenAnswer(invocation -> invocation.getArgument(0));
         cartController = new CartController();
-        TestUtils.injectObject(cartController, "userRepository", userRepository);
-        TestUtils.injectObject(cartController, "cartRepository", cartRepository);
-        TestUtils.injectObject(cartController, "itemRepository", itemRepository);
+        TestUtils.injectObject(cartController, "cartService", cartService);
+        TestUtils.injectObject(cartController, "itemCatalog", new ItemCatalog(itemRepository, 100, 300));
     }
 
     @Test
@@ -51,6 +73,7 @@ public class CartControllerTest {
         user.setPassword("password");
         // create cart for user
         Cart cart = new Cart();
+        cart.setId(5L);
         cart.addItem(item);
         cart.setUser(user);
         user.setCart(cart);
@@ -59,17 +82,54 @@ public class CartControllerTest {
         request.setUsername("test");
         request.setItemId(0L);
         request.setQuantity(2);
-        when(userRepository.findByUsername(request.getUsername())).thenReturn(user);
+        when(userRepository.findCartIdByUsername(request.getUsername())).thenReturn(5L);
+        when(cartRepository.findWithLinesById(5L)).thenReturn(Optional.of(cart));
         when(itemRepository.findById(request.getItemId())).thenReturn(Optional.of(item));
-        final ResponseEntity<Cart> response = cartController.addTocart(request);
+        final ResponseEntity<CartResponse> response = cartController.addTocart(request, null);
         // we got response
         assertNotNull(response);
         // status success
         assertEquals(200, response.getStatusCodeValue());
-        Cart cartNew = response.getBody();
+        CartResponse cartNew = response.getBody();
         assertNotNull(cartNew);
     }
 
+    @Test
+    public void add_to_cart_many_units_single_line() throws Exception{
+        // create item to add
+        Item item = new Item();
+        item.setDescription("description");
+        item.setId(0L);
+        item.setName("name");
+        item.setPrice(new BigDecimal(2));
+        // create user
+        User user = new User();
+        user.setUsername("test");
+        user.setId(0L);
+        user.setPassword("password");
+        // create empty cart for user
+        Cart cart = new Cart();
+        cart.setId(5L);
+        cart.setUser(user);
+        user.setCart(cart);
+        // create cart request
+        ModifyCartRequest request = new ModifyCartRequest();
+        request.setUsername("test");
+        request.setItemId(0L);
+        request.setQuantity(500);
+        when(userRepository.findCartIdByUsername(request.getUsername())).thenReturn(5L);
+        when(cartRepository.findWithLinesById(5L)).thenReturn(Optional.of(cart));
+        when(itemRepository.findById(request.getItemId())).thenReturn(Optional.of(item));
+        final ResponseEntity<CartResponse> response = cartController.addTocart(request, null);
+        // status success
+        assertEquals(200, response.getStatusCodeValue());
+        CartResponse cartNew = response.getBody();
+        // one line holding all units, total updated once
+        assertEquals(1, cartNew.getLines().size());
+        assertEquals(500, cartNew.getLines().get(0).getQuantity());
+        assertEquals(new BigDecimal(1000), cartNew.getTotal());
+    }
+
     @Test
     public void add_to_cart_failed() throws Exception{
         // create item to add
@@ -93,9 +153,9 @@ public class CartControllerTest {
         request.setUsername("test");
         request.setItemId(1L);
         request.setQuantity(2);
-        when(userRepository.findByUsername(request.getUsername())).thenReturn(null);
+        when(userRepository.findCartIdByUsername(request.getUsername())).thenReturn(null);
         when(itemRepository.findById(request.getItemId())).thenReturn(null);
-        final ResponseEntity<Cart> response = cartController.addTocart(request);
+        final ResponseEntity<CartResponse> response = cartController.addTocart(request, null);
         // we got response
         assertNotNull(response);
         // status not found
@@ -123,6 +183,7 @@ public class CartControllerTest {
         user.setPassword("password");
         // create cart for user
         Cart cart = new Cart();
+        cart.setId(5L);
         cart.addItem(item);
         cart.addItem(item2);
         cart.setUser(user);
@@ -132,18 +193,20 @@ public class CartControllerTest {
         request.setUsername("test");
         request.setItemId(0L);
         request.setQuantity(1);
-        when(userRepository.findByUsername(request.getUsername())).thenReturn(user);
+        when(userRepository.findCartIdByUsername(request.getUsername())).thenReturn(5L);
+        when(cartRepository.findWithLinesById(5L)).thenReturn(Optional.of(cart));
         when(itemRepository.findById(request.getItemId())).thenReturn(Optional.of(item));
-        final ResponseEntity<Cart> response = cartController.removeFromcart(request);
+        final ResponseEntity<CartResponse> response = cartController.removeFromcart(request, null);
         // we got response
         assertNotNull(response);
         // status success
         assertEquals(200, response.getStatusCodeValue());
-        Cart cartNew = response.getBody();
+        CartResponse cartNew = response.getBody();
         assertNotNull(cartNew);
         // one item left in cart
-        assertEquals(1, cartNew.getItems().size());
-        assertEquals("name2", cartNew.getItems().get(0).getName());
+        assertEquals(1, cartNew.getLines().size());
+        assertEquals(1, cartNew.getLines().get(0).getQuantity());
+        assertEquals("name2", cartNew.getLines().get(0).getName());
     }
 
     @Test
@@ -176,12 +239,235 @@ public class CartControllerTest {
         request.setUsername("test");
         request.setItemId(0L);
         request.setQuantity(1);
-        when(userRepository.findByUsername(request.getUsername())).thenReturn(null);
+        when(userRepository.findCartIdByUsername(request.getUsername())).thenReturn(null);
         when(itemRepository.findById(request.getItemId())).thenReturn(null);
-        final ResponseEntity<Cart> response = cartController.removeFromcart(request);
+        final ResponseEntity<CartResponse> response = cartController.removeFromcart(request, null);
         // we got response
         assertNotNull(response);
         // status not found
         assertEquals(404, response.getStatusCodeValue());
     }
+
+    @Test
+    public void add_to_cart_with_token_claims_skips_user_lookup() throws Exception{
+        // create item to add
+        Item item = new Item();
+        item.setDescription("description");
+        item.setId(0L);
+        item.setName("name");
+        item.setPrice(new BigDecimal(100));
+        // create user
+        User user = new User();
+        user.setUsername("test");
+        user.setId(0L);
+        user.setPassword("password");
+        // create cart for user
+        Cart cart = new Cart();
+        cart.setId(5L);
+        cart.setUser(user);
+        user.setCart(cart);
+        // create cart request
+        ModifyCartRequest request = new ModifyCartRequest();
+        request.setUsername("test");
+        request.setItemId(0L);
+        request.setQuantity(2);
+        // token carries user and cart ids
+        UserPrincipal principal = new UserPrincipal("test", 0L, 5L);
+        when(cartRepository.findWithLinesById(5L)).thenReturn(Optional.of(cart));
+        when(itemRepository.findById(request.getItemId())).thenReturn(Optional.of(item));
+        final ResponseEntity<CartResponse> response = cartController.addTocart(request, principal);
+        // status success
+        assertEquals(200, response.getStatusCodeValue());
+        // cart was loaded by primary key, user was never looked up by name
+        verify(cartRepository, times(1)).findWithLinesById(5L);
+        verify(userRepository, never()).findCartIdByUsername(anyString());
+    }
+
+    @Test
+    public void get_cart_returns_etag() throws Exception{
+        // create user with cart
+        User user = new User();
+        user.setUsername("test");
+        user.setId(0L);
+        Cart cart = new Cart();
+        cart.setId(5L);
+        cart.setUser(user);
+        user.setCart(cart);
+        UserPrincipal principal = new UserPrincipal("test", 0L, 5L);
+        when(cartRepository.findWithLinesById(5L)).thenReturn(Optional.of(cart));
+        final ResponseEntity<CartResponse> response = cartController.getCart(principal, null);
+        // status success with a body and an entity tag
+        assertEquals(200, response.getStatusCodeValue());
+        assertNotNull(response.getBody());
+        assertNotNull(response.getHeaders().getETag());
+    }
+
+    @Test
+    public void get_cart_not_modified_skips_loading_cart() throws Exception{
+        UserPrincipal principal = new UserPrincipal("test", 0L, 5L);
+        CartRepository.TagState state = tagState(3L, 7L);
+        when(cartRepository.findTagStateById(5L)).thenReturn(state);
+        final ResponseEntity<CartResponse> response = cartController.getCart(principal, "\"5-3-7-0\"");
+        // not modified, no body, cart never loaded
+        assertEquals(304, response.getStatusCodeValue());
+        assertNull(response.getBody());
+        assertEquals("\"5-3-7-0\"", response.getHeaders().getETag());
+        verify(cartRepository, never()).findWithLinesById(anyLong());
+    }
+
+    @Test
+    public void get_cart_with_stale_etag_returns_cart() throws Exception{
+        // create user with cart
+        User user = new User();
+        user.setUsername("test");
+        user.setId(0L);
+        Cart cart = new Cart();
+        cart.setId(5L);
+        cart.setUser(user);
+        user.setCart(cart);
+        UserPrincipal principal = new UserPrincipal("test", 0L, 5L);
+        CartRepository.TagState state = tagState(4L, 7L);
+        when(cartRepository.findTagStateById(5L)).thenReturn(state);
+        when(cartRepository.findWithLinesById(5L)).thenReturn(Optional.of(cart));
+        final ResponseEntity<CartResponse> response = cartController.getCart(principal, "\"5-3-7-0\"");
+        // cart changed since the client last saw it
+        assertEquals(200, response.getStatusCodeValue());
+        assertNotNull(response.getBody());
+    }
+
+    @Test
+    public void get_cart_after_item_edit_returns_cart() throws Exception{
+        User user = new User();
+        user.setUsername("test");
+        user.setId(0L);
+        Cart cart = new Cart();
+        cart.setId(5L);
+        cart.setUser(user);
+        user.setCart(cart);
+        UserPrincipal principal = new UserPrincipal("test", 0L, 5L);
+        // same cart version, but an item on it was renamed or repriced since
+        CartRepository.TagState state = tagState(3L, 8L);
+        when(cartRepository.findTagStateById(5L)).thenReturn(state);
+        when(cartRepository.findWithLinesById(5L)).thenReturn(Optional.of(cart));
+        final ResponseEntity<CartResponse> response = cartController.getCart(principal, "\"5-3-7-0\"");
+        assertEquals(200, response.getStatusCodeValue());
+        assertNotNull(response.getBody());
+    }
+
+    @Test
+    public void add_to_cart_without_token_claims_looks_up_user() throws Exception{
+        // create item to add
+        Item item = new Item();
+        item.setDescription("description");
+        item.setId(0L);
+        item.setName("name");
+        item.setPrice(new BigDecimal(100));
+        // create user
+        User user = new User();
+        user.setUsername("test");
+        user.setId(0L);
+        user.setPassword("password");
+        // create cart for user
+        Cart cart = new Cart();
+        cart.setId(5L);
+        cart.setUser(user);
+        user.setCart(cart);
+        // create cart request
+        ModifyCartRequest request = new ModifyCartRequest();
+        request.setUsername("test");
+        request.setItemId(0L);
+        request.setQuantity(2);
+        // token issued before the id claims were added
+        UserPrincipal principal = new UserPrincipal("test", null, null);
+        when(userRepository.findCartIdByUsername(request.getUsername())).thenReturn(5L);
+        when(cartRepository.findWithLinesById(5L)).thenReturn(Optional.of(cart));
+        when(itemRepository.findById(request.getItemId())).thenReturn(Optional.of(item));
+        final ResponseEntity<CartResponse> response = cartController.addTocart(request, principal);
+        // status success
+        assertEquals(200, response.getStatusCodeValue());
+        // user was looked up by name to find the cart id, then the cart was loaded by it
+        verify(userRepository, times(1)).findCartIdByUsername("test");
+        verify(userRepository, never()).findWithCartByUsername(anyString());
+        verify(cartRepository, times(1)).findWithLinesById(5L);
+    }
+
+    @Test
+    public void modify_cart_batch_reports_failed_lines() throws Exception{
+        // create item to add
+        Item item = new Item();
+        item.setDescription("description");
+        item.setId(0L);
+        item.setName("name");
+        item.setPrice(new BigDecimal(100));
+        // create second item that is not in the cart
+        Item item2 = new Item();
+        item2.setDescription("description2");
+        item2.setId(1L);
+        item2.setName("name2");
+        item2.setPrice(new BigDecimal(200));
+        // create user
+        User user = new User();
+        user.setUsername("test");
+        user.setId(0L);
+        user.setPassword("password");
+        // create empty cart for user
+        Cart cart = new Cart();
+        cart.setId(5L);
+        cart.setUser(user);
+        user.setCart(cart);
+        // add 3 of item, remove 1 of item, add unknown item, remove item2 which is not in the cart
+        ModifyCartBatchRequest request = new ModifyCartBatchRequest();
+        request.setUsername("test");
+        request.setOperations(Arrays.asList(
+                operation(CartLineOperation.Action.ADD, 0L, 3),
+                operation(CartLineOperation.Action.REMOVE, 0L, 1),
+                operation(CartLineOperation.Action.ADD, 7L, 1),
+                operation(CartLineOperation.Action.REMOVE, 1L, 1)));
+        when(userRepository.findCartIdByUsername(request.getUsername())).thenReturn(5L);
+        when(cartRepository.findWithLinesById(5L)).thenReturn(Optional.of(cart));
+        when(itemRepository.findAllById(any())).thenReturn(Arrays.asList(item, item2));
+        final ResponseEntity<ModifyCartBatchResponse> response = cartController.modifyCart(request, null);
+        // status success
+        assertEquals(200, response.getStatusCodeValue());
+        ModifyCartBatchResponse body = response.getBody();
+        assertNotNull(body);
+        // valid lines were applied
+        assertEquals(1, body.getCart().getLines().size());
+        assertEquals(2, body.getCart().getLines().get(0).getQuantity());
+        assertEquals(new BigDecimal(200), body.getCart().getTotal());
+        // invalid lines were reported by index
+        assertEquals(2, body.getFailures().size());
+        assertEquals(2, body.getFailures().get(0).getIndex());
+        assertEquals(3, body.getFailures().get(1).getIndex());
+        // items loaded and cart saved once for the whole batch
+        verify(itemRepository, times(1)).findAllById(any());
+        verify(itemRepository, never()).findById(anyLong());
+        verify(cartRepository, times(1)).save(cart);
+    }
+
+    @Test
+    public void modify_cart_batch_too_large() throws Exception{
+        ModifyCartBatchRequest request = new ModifyCartBatchRequest();
+        request.setUsername("test");
+        request.setOperations(Collections.nCopies(CartController.MAX_BATCH_OPERATIONS + 1,
+                operation(CartLineOperation.Action.ADD, 0L, 1)));
+        final ResponseEntity<ModifyCartBatchResponse> response = cartController.modifyCart(request, null);
+        // status bad request
+        assertEquals(400, response.getStatusCodeValue());
+    }
+
+    private static CartLineOperation operation(CartLineOperation.Action action, long itemId, int quantity) {
+        CartLineOperation operation = new CartLineOperation();
+        operation.setAction(action);
+        operation.setItemId(itemId);
+        operation.setQuantity(quantity);
+        return operation;
+    }
+
+    private static CartRepository.TagState tagState(long version, long itemVersions) {
+        CartRepository.TagState state = mock(CartRepository.TagState.class);
+        when(state.getVersion()).thenReturn(version);
+        when(state.getItemVersions()).thenReturn(itemVersions);
+        return state;
+    }
 }
@@ -7,60 +7,107 @@ import com.example.demo.model.persistence.repositories.CartRepository;
 import com.example.demo.model.persistence.repositories.ItemRepository;
 import com.example.demo.model.persistence.repositories.UserRepository;
 import com.example.demo.model.requests.CreateUserRequest;
+import com.example.demo.model.requests.ItemPageRequest;
+import com.example.demo.model.responses.ItemLookup;
+import com.example.demo.model.responses.ItemPage;
+import com.example.demo.model.responses.ItemView;
+import com.example.demo.service.ItemCatalog;
+import com.example.demo.service.ItemNameIndex;
+import com.example.demo.service.ItemTextIndex;
+import com.example.demo.service.ItemsChangedEvent;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.io.ByteArrayInputStream;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class ItemControllerTest {
     private ItemController itemController;
     private ItemRepository itemRepository = mock(ItemRepository.class);
+    private ItemCatalog itemCatalog;
 
     @Before
     public void setup() {
         itemController = new ItemController();
+        itemCatalog = new ItemCatalog(itemRepository, 100, 300);
         TestUtils.injectObject(itemController, "itemRepository", itemRepository);
+        TestUtils.injectObject(itemController, "itemCatalog", itemCatalog);
+        TestUtils.injectObject(itemController, "itemNameIndex",
+                new ItemNameIndex(itemRepository, mock(PlatformTransactionManager.class)));
+        TestUtils.injectObject(itemController, "itemTextIndex",
+                new ItemTextIndex(itemRepository, mock(PlatformTransactionManager.class)));
     }
 
     @Test
     public void get_all_items() throws Exception{
-        final ResponseEntity<List<Item>> response = itemController.getItems();
+        when(itemRepository.findPage(any(ItemPageRequest.class), eq(101))).thenReturn(Collections.emptyList());
+        final ResponseEntity<List<ItemView>> response = itemController.getItems(null, 100);
         // we got response
         assertNotNull(response);
         // status success
         assertEquals(200, response.getStatusCodeValue());
-        List<Item> items = response.getBody();
+        List<ItemView> items = response.getBody();
         assertNotNull(items);
         // we did not saved any items
         assertEquals(0, items.size());
         // create an item
-        Item itemNew = new Item();
-        itemNew.setDescription("description");
-        itemNew.setId(0L);
-        itemNew.setName("name");
-        itemNew.setPrice(new BigDecimal(100));
-        List<Item> itemList = new ArrayList<>();
-        itemList.add(itemNew);
-        when(itemRepository.findAll()).thenReturn(itemList);
-        final ResponseEntity<List<Item>> responseNew = itemController.getItems();
-        // we got response
-        assertNotNull(responseNew);
+        List<ItemView> itemList = new ArrayList<>();
+        itemList.add(new ItemView(0L, "name", new BigDecimal(100), "description"));
+        when(itemRepository.findPage(any(ItemPageRequest.class), eq(101))).thenReturn(itemList);
+        final ResponseEntity<List<ItemView>> responseNew = itemController.getItems(null, 100);
         // status success
         assertEquals(200, responseNew.getStatusCodeValue());
-        List<Item> itemsNew = responseNew.getBody();
-        assertNotNull(itemsNew);
-        // we saved 1 item
+        List<ItemView> itemsNew = responseNew.getBody();
+        // we saved 1 item, with all of its fields
         assertEquals(1, itemsNew.size());
+        assertEquals("description", itemsNew.get(0).getDescription());
+        // and there is no next page
+        assertNull(responseNew.getHeaders().getFirst(HttpHeaders.LINK));
+    }
+
+    @Test
+    public void get_all_items_is_paged() throws Exception{
+        List<ItemView> rows = new ArrayList<>();
+        for (long id = 1; id <= 3; id++) {
+            rows.add(new ItemView(id, "Widget " + id, new BigDecimal(id), "description"));
+        }
+        when(itemRepository.findPage(any(ItemPageRequest.class), eq(3))).thenReturn(rows);
+        final ResponseEntity<List<ItemView>> response = itemController.getItems(null, 2);
+        assertEquals(2, response.getBody().size());
+        // the next page is linked, continuing after the last id
+        String link = response.getHeaders().getFirst(HttpHeaders.LINK);
+        assertTrue(link.endsWith(">; rel=\"next\""));
+        String cursor = link.substring(link.indexOf("after=") + "after=".length(), link.indexOf('&'));
+        assertEquals(Long.valueOf(2), ItemPageRequest.of("id", cursor, 2, null).getAfterId());
+        // the page size is capped however many are asked for
+        when(itemRepository.findPage(any(ItemPageRequest.class), eq(ItemPageRequest.MAX_PAGE_SIZE + 1)))
+                .thenReturn(Collections.emptyList());
+        assertEquals(200, itemController.getItems(null, 1_000_000).getStatusCodeValue());
+        verify(itemRepository).findPage(any(ItemPageRequest.class), eq(ItemPageRequest.MAX_PAGE_SIZE + 1));
+        // malformed cursor
+        assertEquals(400, itemController.getItems("not a cursor", 2).getStatusCodeValue());
     }
 
     @Test
@@ -137,4 +184,155 @@ public class ItemControllerTest {
         // status success
         assertEquals(404, response.getStatusCodeValue());
     }
+
+    @Test
+    public void repeated_reads_are_served_from_the_catalog() throws Exception{
+        // create an item
+        Item item = new Item();
+        item.setDescription("description");
+        item.setId(0L);
+        item.setName("name");
+        item.setPrice(new BigDecimal(100));
+        when(itemRepository.findById(0L)).thenReturn(Optional.of(item));
+        when(itemRepository.findByName("name")).thenReturn(Collections.singletonList(item));
+        for (int i = 0; i < 10; i++) {
+            assertEquals(200, itemController.getItemById(0L).getStatusCodeValue());
+            assertEquals(200, itemController.getItemsByName("name").getStatusCodeValue());
+        }
+        // one database read per key
+        verify(itemRepository, times(1)).findById(0L);
+        verify(itemRepository, times(1)).findByName("name");
+        // an update of the item is picked up on the next read
+        itemCatalog.onItemsChanged(ItemsChangedEvent.of(Collections.singletonList(0L)));
+        itemController.getItemById(0L);
+        itemController.getItemsByName("name");
+        verify(itemRepository, times(2)).findById(0L);
+        verify(itemRepository, times(2)).findByName("name");
+    }
+
+    @Test
+    public void missing_items_are_cached_too() throws Exception{
+        for (int i = 0; i < 3; i++) {
+            assertEquals(404, itemController.getItemById(7L).getStatusCodeValue());
+        }
+        verify(itemRepository, times(1)).findById(7L);
+    }
+
+    @Test
+    public void search_items_by_prefix() throws Exception{
+        ItemNameIndex index = new ItemNameIndex(itemRepository, mock(PlatformTransactionManager.class));
+        when(itemRepository.streamViews()).thenReturn(Collections.singletonList(
+                new ItemView(0L, "Round Widget", new BigDecimal(100))).stream());
+        index.rebuild();
+        TestUtils.injectObject(itemController, "itemNameIndex", index);
+        final ResponseEntity<List<ItemView>> response = itemController.searchItems("round", 10);
+        // status success
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(1, response.getBody().size());
+        // blank prefix
+        assertEquals(400, itemController.searchItems(" ", 10).getStatusCodeValue());
+    }
+
+    @Test
+    public void search_items_by_text() throws Exception{
+        ItemTextIndex index = new ItemTextIndex(itemRepository, mock(PlatformTransactionManager.class));
+        when(itemRepository.streamViewsWithDescription()).thenReturn(Collections.singletonList(
+                new ItemView(0L, "Widget", new BigDecimal(100), "A round widget")).stream());
+        index.rebuild();
+        TestUtils.injectObject(itemController, "itemTextIndex", index);
+        final ResponseEntity<List<ItemView>> response = itemController.searchItemsByText("round widget", 10);
+        // status success
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(1, response.getBody().size());
+        // blank query
+        assertEquals(400, itemController.searchItemsByText(" ", 10).getStatusCodeValue());
+    }
+
+    @Test
+    public void get_item_page() throws Exception{
+        List<ItemView> rows = new ArrayList<>();
+        for (long id = 1; id <= 3; id++) {
+            rows.add(new ItemView(id, "Widget " + id, new BigDecimal(id), "description"));
+        }
+        // the repository is asked for one row more than the page size
+        when(itemRepository.findPage(any(ItemPageRequest.class), eq(3))).thenReturn(rows);
+        final ResponseEntity<ItemPage> response = itemController.getItemPage("price", null, 2, "id,name");
+        // status success
+        assertEquals(200, response.getStatusCodeValue());
+        ItemPage page = response.getBody();
+        assertEquals(2, page.getItems().size());
+        // only the requested fields
+        assertEquals("Widget 1", page.getItems().get(0).getName());
+        assertNull(page.getItems().get(0).getPrice());
+        assertNull(page.getItems().get(0).getDescription());
+        assertNotNull(page.getNext());
+        // the cursor continues after the last item of the page
+        ItemPageRequest next = ItemPageRequest.of("price", page.getNext(), 2, null);
+        assertEquals(new BigDecimal(2), next.getAfterValue());
+        assertEquals(Long.valueOf(2), next.getAfterId());
+    }
+
+    @Test
+    public void get_last_item_page() throws Exception{
+        when(itemRepository.findPage(any(ItemPageRequest.class), eq(21))).thenReturn(
+                Collections.singletonList(new ItemView(1L, "Widget", new BigDecimal(1))));
+        final ResponseEntity<ItemPage> response = itemController.getItemPage("id", null, 20, null);
+        assertEquals(1, response.getBody().getItems().size());
+        // no more pages
+        assertNull(response.getBody().getNext());
+    }
+
+    @Test
+    public void get_item_page_bad_request() throws Exception{
+        // unknown sort key
+        assertEquals(400, itemController.getItemPage("colour", null, 20, null).getStatusCodeValue());
+        // unknown field
+        assertEquals(400, itemController.getItemPage("id", null, 20, "id,colour").getStatusCodeValue());
+        // malformed cursor
+        assertEquals(400, itemController.getItemPage("id", "not a cursor", 20, null).getStatusCodeValue());
+    }
+
+    @Test
+    public void get_items_by_ids() throws Exception{
+        Item first = new Item();
+        first.setId(1L);
+        first.setName("first");
+        Item third = new Item();
+        third.setId(3L);
+        third.setName("third");
+        when(itemRepository.findAllById(anyIterable())).thenReturn(Arrays.asList(third, first));
+        final ResponseEntity<List<ItemLookup>> response = itemController.getItemsById(Arrays.asList(3L, 2L, 1L));
+        // status success
+        assertEquals(200, response.getStatusCodeValue());
+        List<ItemLookup> lookups = response.getBody();
+        // one entry per id in request order, the missing one marked
+        assertEquals(3, lookups.size());
+        assertEquals("third", lookups.get(0).getItem().getName());
+        assertEquals(Long.valueOf(2), lookups.get(1).getId());
+        assertFalse(lookups.get(1).isFound());
+        assertNull(lookups.get(1).getItem());
+        assertTrue(lookups.get(2).isFound());
+        // resolved with a single query, then from the catalog
+        itemController.getItemsById(Arrays.asList(1L, 2L, 3L));
+        verify(itemRepository, times(1)).findAllById(anyIterable());
+    }
+
+    @Test
+    public void get_items_by_ids_bad_request() throws Exception{
+        // no ids
+        assertEquals(400, itemController.getItemsById(Collections.emptyList()).getStatusCodeValue());
+        // too many ids
+        List<Long> ids = new ArrayList<>();
+        for (long id = 0; id <= ItemController.MAX_IDS_PER_REQUEST; id++) {
+            ids.add(id);
+        }
+        assertEquals(400, itemController.getItemsById(ids).getStatusCodeValue());
+    }
+
+    @Test
+    public void import_is_disabled_by_default() throws Exception{
+        final ResponseEntity<?> response = itemController.importItems("text/csv",
+                new ByteArrayInputStream(new byte[0]));
+        assertEquals(404, response.getStatusCodeValue());
+    }
 }
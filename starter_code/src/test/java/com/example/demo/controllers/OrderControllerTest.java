@@ -5,36 +5,88 @@ import com.example.demo.model.persistence.Cart;
 import com.example.demo.model.persistence.Item;
 import com.example.demo.model.persistence.User;
 import com.example.demo.model.persistence.UserOrder;
+import com.example.demo.model.persistence.UserOrderSummary;
 import com.example.demo.model.persistence.repositories.CartRepository;
 import com.example.demo.model.persistence.repositories.ItemRepository;
 import com.example.demo.model.persistence.repositories.OrderRepository;
+import com.example.demo.model.persistence.repositories.UserOrderSummaryRepository;
 import com.example.demo.model.persistence.repositories.UserRepository;
 import com.example.demo.model.requests.ModifyCartRequest;
+import com.example.demo.security.UserPrincipal;
+import com.example.demo.model.responses.OrderHistoryPage;
+import com.example.demo.model.responses.OrderIntakeStatus;
+import com.example.demo.model.responses.OrderSummaryResponse;
+import com.example.demo.service.CartService;
+import com.example.demo.service.IdempotencyStore;
+import com.example.demo.service.OrderHistoryService;
+import com.example.demo.service.OrderIntakeService;
+import com.example.demo.service.OrderSummaryService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.demo.service.WriteBehindCartStore;
 import org.aspectj.weaver.ast.Or;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.jupiter.api.Order;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class OrderControllerTest {
     private OrderController orderController;
     private UserRepository userRepository = mock(UserRepository.class);
     private OrderRepository orderRepository = mock(OrderRepository.class);
+    private CartRepository cartRepository = mock(CartRepository.class);
+    private UserOrderSummaryRepository summaryRepository = mock(UserOrderSummaryRepository.class);
+    private OrderIntakeService orderIntakeService;
 
     @Before
     public void setup() {
         orderController = new OrderController();
         TestUtils.injectObject(orderController, "userRepository", userRepository);
         TestUtils.injectObject(orderController, "orderRepository", orderRepository);
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        TestUtils.injectObject(orderController, "cartService", new CartService(cartRepository, userRepository,
+                transactionManager, new WriteBehindCartStore(cartRepository, transactionManager, false, 100, 600000),
+                5, false, 64));
+        // a user's summary row exists once created
+        when(summaryRepository.findForUpdate(anyLong()))
+                .thenAnswer(invocation -> Optional.of(new UserOrderSummary(invocation.getArgument(0))));
+        OrderSummaryService orderSummaryService = new OrderSummaryService(orderRepository, summaryRepository,
+                transactionManager, 1, 500);
+        TestUtils.injectObject(orderController, "orderSummaryService", orderSummaryService);
+        TestUtils.injectObject(orderController, "idempotencyStore", new IdempotencyStore(100, 3600));
+        orderIntakeService = new OrderIntakeService(orderRepository, orderSummaryService, transactionManager,
+                100, 10, 100, 3600);
+        orderIntakeService.start();
+        TestUtils.injectObject(orderController, "orderIntakeService", orderIntakeService);
+        TestUtils.injectObject(orderController, "orderHistoryService",
+                new OrderHistoryService(orderRepository, transactionManager, new ObjectMapper()));
+    }
+
+    @After
+    public void teardown() throws Exception{
+        orderIntakeService.shutdown();
     }
 
     @Test
@@ -54,8 +106,8 @@ public class OrderControllerTest {
         cart.setUser(user);
         cart.addItem(item);
         user.setCart(cart);
-        when(userRepository.findByUsername(user.getUsername())).thenReturn(user);
-        final ResponseEntity<UserOrder> response = orderController.submit(user.getUsername());
+        when(userRepository.findWithCartByUsername(user.getUsername())).thenReturn(user);
+        final ResponseEntity<UserOrder> response = orderController.submit(user.getUsername(), null, null);
         // we got response
         assertNotNull(response);
         // status success
@@ -64,6 +116,38 @@ public class OrderControllerTest {
         assertNotNull(order);
     }
 
+    @Test
+    public void order_submit_captures_lines_and_prices() throws Exception{
+        // create user
+        User user = new User();
+        user.setUsername("test");
+        user.setId(0L);
+        user.setPassword("password");
+        // create cart with three units of one item
+        Item item = new Item();
+        item.setDescription("description");
+        item.setId(4L);
+        item.setName("name");
+        item.setPrice(new BigDecimal("1.99"));
+        Cart cart = new Cart();
+        cart.setUser(user);
+        cart.addItem(item, 3);
+        user.setCart(cart);
+        when(userRepository.findWithCartByUsername(user.getUsername())).thenReturn(user);
+        final ResponseEntity<UserOrder> response = orderController.submit(user.getUsername(), null, null);
+        UserOrder order = response.getBody();
+        // one line for the item, not one row per unit
+        assertEquals(1, order.getLines().size());
+        assertEquals(4L, order.getLines().get(0).getItemId());
+        assertEquals(3, order.getLines().get(0).getQuantity());
+        assertEquals(199L, order.getLines().get(0).getUnitPriceCents());
+        assertEquals(new BigDecimal("5.97"), order.getTotal());
+        // later catalog price changes do not touch the order
+        item.setPrice(new BigDecimal("2.50"));
+        assertEquals(199L, order.getLines().get(0).getUnitPriceCents());
+        assertEquals(new BigDecimal("5.97"), order.getTotal());
+    }
+
     @Test
     public void order_submit_not_found_user() throws Exception{
         // create user
@@ -81,14 +165,70 @@ public class OrderControllerTest {
         cart.setUser(user);
         cart.addItem(item);
         user.setCart(cart);
-        when(userRepository.findByUsername(user.getUsername())).thenReturn(null);
-        final ResponseEntity<UserOrder> response = orderController.submit(user.getUsername());
+        when(userRepository.findWithCartByUsername(user.getUsername())).thenReturn(null);
+        final ResponseEntity<UserOrder> response = orderController.submit(user.getUsername(), null, null);
         // we got response
         assertNotNull(response);
         // status not found
         assertEquals(404, response.getStatusCodeValue());
     }
 
+    @Test
+    public void order_intake_happy_path() throws Exception{
+        // create user
+        User user = new User();
+        user.setUsername("test");
+        user.setId(0L);
+        user.setPassword("password");
+        // create cart with item for user
+        Item item = new Item();
+        item.setDescription("description");
+        item.setId(0L);
+        item.setName("name");
+        item.setPrice(new BigDecimal(100));
+        Cart cart = new Cart();
+        cart.setUser(user);
+        cart.addItem(item);
+        user.setCart(cart);
+        when(userRepository.findWithCartByUsername(user.getUsername())).thenReturn(user);
+        when(orderRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<UserOrder> orders = invocation.getArgument(0);
+            orders.forEach(order -> order.setId(7L));
+            return orders;
+        });
+        final ResponseEntity<OrderIntakeStatus> response = orderController.submitForIntake(user.getUsername(), null);
+        // accepted with a reference to poll
+        assertEquals(202, response.getStatusCodeValue());
+        String reference = response.getBody().getReference();
+        assertNotNull(reference);
+        // once written, the status carries the order id
+        orderIntakeService.shutdown();
+        final ResponseEntity<OrderIntakeStatus> status = orderController.getIntakeStatus(reference,
+                new UserPrincipal("test", 0L, null));
+        assertEquals(200, status.getStatusCodeValue());
+        assertEquals(OrderIntakeStatus.State.COMPLETED, status.getBody().getState());
+        assertEquals(Long.valueOf(7L), status.getBody().getOrderId());
+        // other users cannot see it
+        assertEquals(404, orderController.getIntakeStatus(reference,
+                new UserPrincipal("other", 1L, null)).getStatusCodeValue());
+    }
+
+    @Test
+    public void order_intake_empty_cart() throws Exception{
+        // create user with an empty cart
+        User user = new User();
+        user.setUsername("test");
+        user.setId(0L);
+        user.setPassword("password");
+        Cart cart = new Cart();
+        cart.setUser(user);
+        user.setCart(cart);
+        when(userRepository.findWithCartByUsername(user.getUsername())).thenReturn(user);
+        final ResponseEntity<OrderIntakeStatus> response = orderController.submitForIntake(user.getUsername(), null);
+        // status bad request
+        assertEquals(400, response.getStatusCodeValue());
+    }
+
     @Test
     public void get_orders_for_user_happy_path() throws Exception{
         // create user
@@ -106,11 +246,12 @@ public class OrderControllerTest {
         cart.setUser(user);
         cart.addItem(item);
         user.setCart(cart);
-        when(userRepository.findByUsername(user.getUsername())).thenReturn(user);
+        when(userRepository.findWithCartByUsername(user.getUsername())).thenReturn(user);
+        when(userRepository.findIdByUsername(user.getUsername())).thenReturn(user.getId());
         // create order
-        orderController.submit(user.getUsername());
+        orderController.submit(user.getUsername(), null, null);
         // check history
-        final ResponseEntity<List<UserOrder>> response = orderController.getOrdersForUser(user.getUsername());
+        final ResponseEntity<List<UserOrder>> response = orderController.getOrdersForUser(user.getUsername(), null);
         // we got response
         assertNotNull(response);
         // status success
@@ -136,16 +277,218 @@ public class OrderControllerTest {
         cart.setUser(user);
         cart.addItem(item);
         user.setCart(cart);
-        when(userRepository.findByUsername(user.getUsername())).thenReturn(user);
+        when(userRepository.findWithCartByUsername(user.getUsername())).thenReturn(user);
         // create order
-        orderController.submit(user.getUsername());
+        orderController.submit(user.getUsername(), null, null);
         // not found user
-        when(userRepository.findByUsername(user.getUsername())).thenReturn(null);
+        when(userRepository.findIdByUsername(user.getUsername())).thenReturn(null);
         // check history
-        final ResponseEntity<List<UserOrder>> response = orderController.getOrdersForUser(user.getUsername());
+        final ResponseEntity<List<UserOrder>> response = orderController.getOrdersForUser(user.getUsername(), null);
         // we got response
         assertNotNull(response);
         // status not found
         assertEquals(404, response.getStatusCodeValue());
     }
+
+    @Test
+    public void order_submit_with_token_claims_skips_user_lookup() throws Exception{
+        // create user
+        User user = new User();
+        user.setUsername("test");
+        user.setId(0L);
+        user.setPassword("password");
+        // create cart with item for user
+        Item item = new Item();
+        item.setDescription("description");
+        item.setId(0L);
+        item.setName("name");
+        item.setPrice(new BigDecimal(100));
+        Cart cart = new Cart();
+        cart.setId(5L);
+        cart.setUser(user);
+        cart.addItem(item);
+        user.setCart(cart);
+        when(cartRepository.findWithLinesById(5L)).thenReturn(Optional.of(cart));
+        final ResponseEntity<UserOrder> response = orderController.submit(user.getUsername(),
+                new UserPrincipal("test", 0L, 5L), null);
+        // status success
+        assertEquals(200, response.getStatusCodeValue());
+        // cart was loaded by primary key, user was never looked up by name
+        verify(cartRepository, times(1)).findWithLinesById(5L);
+        verify(userRepository, never()).findWithCartByUsername(anyString());
+    }
+
+    @Test
+    public void get_orders_for_user_with_token_claims_skips_user_lookup() throws Exception{
+        final ResponseEntity<List<UserOrder>> response = orderController.getOrdersForUser("test",
+                new UserPrincipal("test", 0L, 5L));
+        // status success
+        assertEquals(200, response.getStatusCodeValue());
+        // one query for the orders instead of a user lookup followed by the orders
+        verify(orderRepository, times(1)).findWithLinesByUserId(0L);
+        verify(orderRepository, never()).findByUser(any());
+        verify(userRepository, never()).findIdByUsername(anyString());
+    }
+
+    @Test
+    public void get_order_page_returns_cursor() throws Exception{
+        // three orders after id 10, asking for two
+        List<UserOrder> orders = new ArrayList<>();
+        for (long id = 11; id <= 13; id++) {
+            UserOrder order = new UserOrder();
+            order.setId(id);
+            orders.add(order);
+        }
+        when(orderRepository.findByUserIdAndIdGreaterThanOrderByIdAsc(eq(0L), eq(10L), eq(PageRequest.of(0, 3))))
+                .thenReturn(orders);
+        final ResponseEntity<OrderHistoryPage> response = orderController.getOrderPageForUser("test", 10L, 2,
+                new UserPrincipal("test", 0L, 5L));
+        // status success
+        assertEquals(200, response.getStatusCodeValue());
+        // page holds two orders and points at the last one
+        assertEquals(2, response.getBody().getOrders().size());
+        assertEquals(Long.valueOf(12L), response.getBody().getNext());
+    }
+
+    @Test
+    public void get_order_page_last_page_has_no_cursor() throws Exception{
+        UserOrder order = new UserOrder();
+        order.setId(11L);
+        List<UserOrder> orders = new ArrayList<>();
+        orders.add(order);
+        when(orderRepository.findByUserIdAndIdGreaterThanOrderByIdAsc(eq(0L), eq(10L), any()))
+                .thenReturn(orders);
+        final ResponseEntity<OrderHistoryPage> response = orderController.getOrderPageForUser("test", 10L, 2,
+                new UserPrincipal("test", 0L, 5L));
+        assertEquals(1, response.getBody().getOrders().size());
+        assertNull(response.getBody().getNext());
+    }
+
+    @Test
+    public void get_order_page_size_is_capped() throws Exception{
+        when(orderRepository.findByUserIdAndIdGreaterThanOrderByIdAsc(eq(0L), eq(0L), any()))
+                .thenReturn(new ArrayList<>());
+        orderController.getOrderPageForUser("test", 0L, 1000000, new UserPrincipal("test", 0L, 5L));
+        // never more than the cap plus the look-ahead row
+        verify(orderRepository).findByUserIdAndIdGreaterThanOrderByIdAsc(0L, 0L,
+                PageRequest.of(0, OrderHistoryService.MAX_PAGE_SIZE + 1));
+    }
+
+    @Test
+    public void export_orders_not_found_user() throws Exception{
+        when(userRepository.findIdByUsername("test")).thenReturn(null);
+        assertEquals(404, orderController.exportOrdersForUser("test", null).getStatusCodeValue());
+    }
+
+    @Test
+    public void order_submit_updates_summary() throws Exception{
+        // create user
+        User user = new User();
+        user.setUsername("test");
+        user.setId(0L);
+        user.setPassword("password");
+        // create cart with two units of one item
+        Item item = new Item();
+        item.setDescription("description");
+        item.setId(4L);
+        item.setName("name");
+        item.setPrice(new BigDecimal("1.50"));
+        Cart cart = new Cart();
+        cart.setUser(user);
+        cart.addItem(item, 2);
+        user.setCart(cart);
+        when(userRepository.findWithCartByUsername(user.getUsername())).thenReturn(user);
+        UserOrderSummary summary = new UserOrderSummary(0L);
+        when(summaryRepository.findForUpdate(0L)).thenReturn(Optional.of(summary));
+        when(summaryRepository.findById(0L)).thenReturn(Optional.of(summary));
+        orderController.submit(user.getUsername(), null, null);
+        orderController.submit(user.getUsername(), null, null);
+        final ResponseEntity<OrderSummaryResponse> response = orderController.getOrderSummaryForUser("test",
+                new UserPrincipal("test", 0L, null));
+        // status success
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(2, response.getBody().getOrderCount());
+        assertEquals(new BigDecimal("6.00"), response.getBody().getTotalSpend());
+        assertEquals(1, response.getBody().getFavouriteItems().size());
+        assertEquals(4L, response.getBody().getFavouriteItems().get(0).getItemId());
+        assertEquals(4L, response.getBody().getFavouriteItems().get(0).getQuantity());
+    }
+
+    @Test
+    public void order_summary_not_found_user() throws Exception{
+        when(userRepository.findIdByUsername("test")).thenReturn(null);
+        assertEquals(404, orderController.getOrderSummaryForUser("test", null).getStatusCodeValue());
+    }
+
+    @Test
+    public void order_submit_replays_idempotent_retry() throws Exception{
+        // create user
+        User user = new User();
+        user.setUsername("test");
+        user.setId(0L);
+        user.setPassword("password");
+        // create cart with item for user
+        Item item = new Item();
+        item.setDescription("description");
+        item.setId(0L);
+        item.setName("name");
+        item.setPrice(new BigDecimal(100));
+        Cart cart = new Cart();
+        cart.setUser(user);
+        cart.addItem(item);
+        user.setCart(cart);
+        when(userRepository.findWithCartByUsername(user.getUsername())).thenReturn(user);
+        UserPrincipal caller = new UserPrincipal("test", null, null);
+        final ResponseEntity<UserOrder> first = orderController.submit(user.getUsername(), caller, "key-1");
+        final ResponseEntity<UserOrder> retry = orderController.submit(user.getUsername(), caller, "key-1");
+        // retry gets the original order back
+        assertEquals(200, retry.getStatusCodeValue());
+        assertSame(first.getBody(), retry.getBody());
+        assertEquals("true", retry.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+        // only the first request touched the database
+        verify(userRepository, times(1)).findWithCartByUsername("test");
+        verify(orderRepository, times(1)).save(any(UserOrder.class));
+        // a new key is a new order
+        orderController.submit(user.getUsername(), caller, "key-2");
+        verify(orderRepository, times(2)).save(any(UserOrder.class));
+    }
+
+    @Test
+    public void order_submit_failure_is_not_replayed() throws Exception{
+        when(userRepository.findWithCartByUsername("test")).thenReturn(null);
+        UserPrincipal caller = new UserPrincipal("test", null, null);
+        assertEquals(404, orderController.submit("test", caller, "key-1").getStatusCodeValue());
+        // the key stays free, the retry runs again
+        orderController.submit("test", caller, "key-1");
+        verify(userRepository, times(2)).findWithCartByUsername("test");
+    }
+
+    @Test
+    public void order_submit_keys_belong_to_the_caller() throws Exception{
+        User user = new User();
+        user.setUsername("test");
+        user.setId(0L);
+        Item item = new Item();
+        item.setId(0L);
+        item.setPrice(new BigDecimal(100));
+        Cart cart = new Cart();
+        cart.setUser(user);
+        cart.addItem(item);
+        user.setCart(cart);
+        when(userRepository.findWithCartByUsername("test")).thenReturn(user);
+        orderController.submit("test", new UserPrincipal("test", null, null), "key-1");
+        // another caller reusing the key on the same path is not handed the first caller's order
+        ResponseEntity<UserOrder> other = orderController.submit("test", new UserPrincipal("other", null, null), "key-1");
+        assertNull(other.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+        verify(orderRepository, times(2)).save(any(UserOrder.class));
+    }
+
+    @Test
+    public void order_submit_rejects_oversized_idempotency_key() throws Exception{
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i <= IdempotencyStore.MAX_KEY_LENGTH; i++) {
+            key.append('k');
+        }
+        assertEquals(400, orderController.submit("test", new UserPrincipal("test", null, null), key.toString()).getStatusCodeValue());
+    }
 }
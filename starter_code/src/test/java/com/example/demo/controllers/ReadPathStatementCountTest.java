@@ -0,0 +1,188 @@
+package com.example.demo.controllers;
+
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.OrderLine;
+import com.example.demo.model.persistence.User;
+import com.example.demo.model.persistence.UserOrder;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.example.demo.model.persistence.repositories.OrderRepository;
+import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.model.responses.CartResponse;
+import com.example.demo.security.UserPrincipal;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Counts the JDBC statements of the cart and order read paths with Hibernate statistics. Each path must
+ * issue exactly the expected statements, for a user with many cart lines and orders as for a user with
+ * one, so an association that falls back to loading row by row or an extra eager load fails here.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class ReadPathStatementCountTest {
+    private static final int MANY = 25;
+
+    @Autowired
+    private CartController cartController;
+
+    @Autowired
+    private OrderController orderController;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    private User one;
+
+    private User many;
+
+    @Before
+    public void setup() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        one = userWith(1);
+        many = userWith(MANY);
+    }
+
+    @Test
+    public void order_history_by_username() {
+        // the user id by username, then the orders with their lines
+        assertStatements(2, user -> orderController.getOrdersForUser(user.getUsername(), null));
+    }
+
+    @Test
+    public void order_history_with_token_claims() {
+        assertStatements(1, user -> orderController.getOrdersForUser(user.getUsername(), principal(user)));
+    }
+
+    @Test
+    public void order_export_with_token_claims() {
+        // the page of order ids, then those orders with their lines
+        assertStatements(2, user -> {
+            ResponseEntity<StreamingResponseBody> response = orderController.exportOrdersForUser(user.getUsername(),
+                    principal(user));
+            try {
+                response.getBody().writeTo(new ByteArrayOutputStream());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return response;
+        });
+    }
+
+    @Test
+    public void cart_with_token_claims() {
+        assertStatements(1, user -> cartController.getCart(principal(user), null));
+    }
+
+    @Test
+    public void cart_by_username() {
+        // a token without ids makes the cart lookup go through the user
+        assertStatements(1, user -> cartController.getCart(new UserPrincipal(user.getUsername(), null, null), null));
+    }
+
+    @Test
+    public void unchanged_cart_is_not_modified_in_one_statement() {
+        for (User user : Arrays.asList(one, many)) {
+            String tag = cartController.getCart(principal(user), null).getHeaders().getETag();
+            statistics.clear();
+            // the versions are summed in the database, the cart and its lines are not loaded
+            assertEquals(304, cartController.getCart(principal(user), tag).getStatusCodeValue());
+            assertEquals(1, statistics.getPrepareStatementCount());
+        }
+    }
+
+    @Test
+    public void item_edit_changes_the_cart_tag() {
+        String tag = cartController.getCart(principal(one), null).getHeaders().getETag();
+        Item item = itemRepository.findById(one.getCart().getLines().keySet().iterator().next()).get();
+        item.setPrice(new BigDecimal("2.50"));
+        itemRepository.save(item);
+        // the cart itself is unchanged, but what it shows is not
+        ResponseEntity<CartResponse> response = cartController.getCart(principal(one), tag);
+        assertEquals(200, response.getStatusCodeValue());
+        assertNotEquals(tag, response.getHeaders().getETag());
+        assertEquals(0, new BigDecimal("2.50").compareTo(response.getBody().getLines().get(0).getPrice()));
+    }
+
+    private void assertStatements(long expected, ReadPath path) {
+        assertEquals("statements for one row", expected, statements(path, one));
+        assertEquals("statements for " + MANY + " rows", expected, statements(path, many));
+    }
+
+    private long statements(ReadPath path, User user) {
+        statistics.clear();
+        ResponseEntity<?> response = path.read(user);
+        assertEquals(200, response.getStatusCodeValue());
+        return statistics.getPrepareStatementCount();
+    }
+
+    private static UserPrincipal principal(User user) {
+        return new UserPrincipal(user.getUsername(), user.getId(), user.getCart().getId());
+    }
+
+    private User userWith(int rows) {
+        Cart cart = new Cart();
+        List<OrderLine> lines = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            Item item = new Item();
+            item.setName("Counted " + i);
+            item.setPrice(BigDecimal.ONE);
+            item.setDescription("description");
+            item = itemRepository.save(item);
+            cart.addItem(item);
+            lines.add(new OrderLine(item.getId(), 1, 100));
+        }
+        User user = new User();
+        user.setUsername("counted-" + rows + "-" + System.nanoTime());
+        user.setPassword("password");
+        // the cart and its lines are persisted with the user
+        user.setCart(cart);
+        user = userRepository.save(user);
+        List<UserOrder> orders = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            UserOrder order = new UserOrder();
+            order.setUser(user);
+            order.setLines(new ArrayList<>(lines));
+            order.setTotal(BigDecimal.valueOf(rows));
+            orders.add(order);
+        }
+        orderRepository.saveAll(orders);
+        return user;
+    }
+
+    private interface ReadPath {
+        ResponseEntity<?> read(User user);
+    }
+}
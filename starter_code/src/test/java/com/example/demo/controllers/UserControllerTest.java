@@ -6,6 +6,8 @@ import com.example.demo.model.persistence.User;
 import com.example.demo.model.persistence.repositories.CartRepository;
 import com.example.demo.model.persistence.repositories.UserRepository;
 import com.example.demo.model.requests.CreateUserRequest;
+import com.example.demo.security.PasswordHashingBusyException;
+import com.example.demo.security.UserDetailsCache;
 import org.junit.Before;
 import org.junit.Test;
 import org.springframework.http.ResponseEntity;
@@ -31,6 +33,7 @@ public class UserControllerTest {
         TestUtils.injectObject(userController, "userRepository", userRepository);
         TestUtils.injectObject(userController, "cartRepository", cartRepository);
         TestUtils.injectObject(userController, "bCryptPasswordEncoder", encoder);
+        TestUtils.injectObject(userController, "userDetailsCache", new UserDetailsCache(100, 300, 30));
     }
 
     @Test
@@ -65,6 +68,21 @@ public class UserControllerTest {
         assertEquals(400, response.getStatusCodeValue());
     }
 
+    @Test
+    public void create_user_hashing_busy() throws Exception{
+        when(encoder.encode("testpassword")).thenThrow(new PasswordHashingBusyException());
+        CreateUserRequest request = new CreateUserRequest();
+        request.setUsername("test");
+        request.setPassword("testpassword");
+        request.setConfirmPassword("testpassword");
+        final ResponseEntity<User> response = userController.createUser(request);
+        // we got response
+        assertNotNull(response);
+        // status service unavailable with a hint to retry
+        assertEquals(503, response.getStatusCodeValue());
+        assertEquals("1", response.getHeaders().getFirst("Retry-After"));
+    }
+
     @Test
     public void get_user_by_name() throws Exception{
         when(encoder.encode("testpassword")).thenReturn("thisishashed");
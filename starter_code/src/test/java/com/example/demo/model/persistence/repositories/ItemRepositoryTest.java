@@ -0,0 +1,98 @@
+package com.example.demo.model.persistence.repositories;
+
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.requests.ItemPageRequest;
+import com.example.demo.model.responses.ItemView;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class ItemRepositoryTest {
+    @Autowired
+    private ItemRepository itemRepository;
+
+    private final List<Item> saved = new ArrayList<>();
+
+    @Before
+    public void setup() {
+        // several items share a price so the id has to break ties
+        for (int i = 0; i < 12; i++) {
+            Item item = new Item();
+            item.setName("Paged " + (char) ('a' + i));
+            item.setPrice(BigDecimal.valueOf(i / 3));
+            item.setDescription("description " + i);
+            saved.add(itemRepository.save(item));
+        }
+    }
+
+    @After
+    public void cleanup() {
+        itemRepository.deleteAll(saved);
+    }
+
+    @Test
+    public void pages_by_price_visit_every_item_once_in_order() {
+        List<ItemView> seen = new ArrayList<>();
+        String after = null;
+        do {
+            ItemPageRequest request = ItemPageRequest.of("price", after, 5, "id,price");
+            List<ItemView> rows = itemRepository.findPage(request, request.getSize() + 1);
+            boolean more = rows.size() > request.getSize();
+            List<ItemView> page = more ? rows.subList(0, request.getSize()) : rows;
+            seen.addAll(page);
+            after = more ? request.cursorAfter(page.get(page.size() - 1)) : null;
+        } while (after != null);
+        int paged = 0;
+        for (int i = 0; i < seen.size(); i++) {
+            ItemView item = seen.get(i);
+            // descriptions are never read when not asked for
+            assertNull(item.getDescription());
+            if (i > 0) {
+                ItemView previous = seen.get(i - 1);
+                int byPrice = previous.getPrice().compareTo(item.getPrice());
+                assertTrue(byPrice < 0 || byPrice == 0 && previous.getId() < item.getId());
+            }
+            if (item.getId() >= saved.get(0).getId()) {
+                paged++;
+            }
+        }
+        assertEquals(12, paged);
+    }
+
+    @Test
+    public void pages_by_name_with_descriptions() {
+        ItemPageRequest first = ItemPageRequest.of("name", null, 3, null);
+        List<ItemView> rows = itemRepository.findPage(first, 4);
+        assertEquals(4, rows.size());
+        assertNotNull(rows.get(0).getDescription());
+        ItemPageRequest second = ItemPageRequest.of("name", first.cursorAfter(rows.get(2)), 3, null);
+        List<ItemView> next = itemRepository.findPage(second, 4);
+        // the look-ahead row opens the next page
+        assertEquals(rows.get(3).getId(), next.get(0).getId());
+    }
+
+    @Test
+    public void seeded_items_keep_their_ids_and_new_ones_come_after() {
+        assertEquals("Round Widget", itemRepository.findById(1L).get().getName());
+        assertEquals("Square Widget", itemRepository.findById(2L).get().getName());
+        // the sequence starts above the seed, so the pooled block never reaches back to 1 or 2
+        for (Item item : saved) {
+            assertTrue(item.getId() > 2);
+        }
+    }
+}
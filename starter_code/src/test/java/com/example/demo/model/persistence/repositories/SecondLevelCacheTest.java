@@ -0,0 +1,88 @@
+package com.example.demo.model.persistence.repositories;
+
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.User;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class SecondLevelCacheTest {
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @Before
+    public void setup() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @Test
+    public void item_reads_are_served_from_the_cache() {
+        Item item = itemRepository.save(item("cached"));
+        itemRepository.findById(item.getId());
+        statistics.clear();
+        // every repository call outside a transaction has its own session
+        for (int i = 0; i < 5; i++) {
+            assertEquals("cached", itemRepository.findById(item.getId()).get().getDescription());
+        }
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(5, statistics.getDomainDataRegionStatistics("item").getHitCount());
+    }
+
+    @Test
+    public void item_updates_replace_the_cached_item() {
+        Item item = itemRepository.save(item("before"));
+        itemRepository.findById(item.getId());
+        item.setDescription("after");
+        itemRepository.save(item);
+        assertEquals("after", itemRepository.findById(item.getId()).get().getDescription());
+    }
+
+    @Test
+    public void user_ids_are_served_from_the_query_cache() {
+        User user = new User();
+        user.setUsername("cached-" + System.nanoTime());
+        user.setPassword("password");
+        user = userRepository.save(user);
+        userRepository.findIdByUsername(user.getUsername());
+        statistics.clear();
+        assertEquals(Long.valueOf(user.getId()), userRepository.findIdByUsername(user.getUsername()));
+        assertEquals(1, statistics.getQueryCacheHitCount());
+        // a new user invalidates the cached lookups, the next one goes to the database again
+        User other = new User();
+        other.setUsername("other-" + System.nanoTime());
+        other.setPassword("password");
+        userRepository.save(other);
+        assertEquals(Long.valueOf(user.getId()), userRepository.findIdByUsername(user.getUsername()));
+        assertTrue(statistics.getQueryCacheMissCount() > 0);
+    }
+
+    private static Item item(String description) {
+        Item item = new Item();
+        item.setName("Cached item");
+        item.setPrice(BigDecimal.ONE);
+        item.setDescription(description);
+        return item;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.demo.security;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.Authentication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class JWTAuthenticationFilterTest {
+    private AuthenticationManager authenticationManager = mock(AuthenticationManager.class);
+    private JWTAuthenticationFilter filter;
+
+    @Before
+    public void setup() {
+        filter = new JWTAuthenticationFilter(authenticationManager);
+    }
+
+    @Test
+    public void busy_password_hashing_answers_503_with_retry_after() throws Exception{
+        when(authenticationManager.authenticate(any(Authentication.class)))
+                .thenThrow(new PasswordHashingBusyException());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(login(), response, chain);
+        assertEquals(503, response.getStatus());
+        assertEquals("1", response.getHeader(HttpHeaders.RETRY_AFTER));
+        // no token, and the request went no further
+        assertNull(response.getHeader(SecurityConstants.HEADER_STRING));
+        assertNull(chain.getRequest());
+    }
+
+    @Test
+    public void bad_credentials_still_answer_401() throws Exception{
+        when(authenticationManager.authenticate(any(Authentication.class)))
+                .thenThrow(new BadCredentialsException("Bad credentials"));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(login(), response, new MockFilterChain());
+        assertEquals(401, response.getStatus());
+        assertNull(response.getHeader(HttpHeaders.RETRY_AFTER));
+    }
+
+    private static MockHttpServletRequest login() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/login");
+        request.setServletPath("/login");
+        request.setContentType("application/json");
+        request.setContent("{\"username\":\"test\",\"password\":\"testpassword\"}".getBytes());
+        return request;
+    }
+}
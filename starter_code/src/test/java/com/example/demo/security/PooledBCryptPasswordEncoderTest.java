@@ -0,0 +1,141 @@
+package com.example.demo.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PooledBCryptPasswordEncoderTest {
+    private PooledBCryptPasswordEncoder encoder;
+    private SimpleMeterRegistry registry;
+
+    @Before
+    public void setup() {
+        encoder = new PooledBCryptPasswordEncoder(1, 1);
+        registry = new SimpleMeterRegistry();
+        encoder.bindTo(registry);
+    }
+
+    @After
+    public void teardown() {
+        encoder.shutdown();
+    }
+
+    @Test
+    public void encode_produces_a_plain_bcrypt_hash() throws Exception{
+        String hash = encoder.encode("testpassword");
+        // any BCrypt encoder can check it, so existing hashes stay valid both ways
+        assertTrue(new BCryptPasswordEncoder().matches("testpassword", hash));
+        assertEquals(1, (long) registry.get("password.hashing").functionTimer().count());
+    }
+
+    @Test
+    public void matches_checks_against_the_stored_hash() throws Exception{
+        String hash = new BCryptPasswordEncoder().encode("testpassword");
+        assertTrue(encoder.matches("testpassword", hash));
+        assertFalse(encoder.matches("wrongpassword", hash));
+        assertEquals(2, (long) registry.get("password.hashing").functionTimer().count());
+    }
+
+    @Test
+    public void hashing_runs_on_the_pool_and_its_failures_reach_the_caller() throws Exception{
+        CharSequence failing = new FailingPassword();
+        try {
+            encoder.encode(failing);
+            fail("the hashing failure was swallowed");
+        } catch (IllegalStateException e) {
+            // thrown as is, not wrapped in an ExecutionException
+            assertTrue(e.getMessage().startsWith("password-hashing-"));
+        }
+    }
+
+    @Test
+    public void full_queue_is_rejected_without_waiting() throws Exception{
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingPassword running = new BlockingPassword(release);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            // one hash holds the only worker, a second one fills the only queue slot
+            Future<String> first = callers.submit(() -> encoder.encode(running));
+            assertTrue(running.started.await(5, TimeUnit.SECONDS));
+            Future<String> queued = callers.submit(() -> encoder.encode(new BlockingPassword(release)));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (encoder.getQueueDepth() < 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(1, encoder.getQueueDepth());
+            try {
+                encoder.encode("testpassword");
+                fail("the third hash was queued");
+            } catch (PasswordHashingBusyException e) {
+                assertEquals(1, (long) registry.get("password.hashing.rejected").functionCounter().count());
+            }
+            // the accepted hashes still complete once the worker frees up
+            release.countDown();
+            assertTrue(first.get(5, TimeUnit.SECONDS).startsWith("$2a$"));
+            assertTrue(queued.get(5, TimeUnit.SECONDS).startsWith("$2a$"));
+        } finally {
+            release.countDown();
+            callers.shutdownNow();
+        }
+    }
+
+    /** BCrypt reads the raw password with toString(), which lets a test hold the worker. */
+    private static class BlockingPassword implements CharSequence {
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release;
+
+        BlockingPassword(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public String toString() {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "testpassword";
+        }
+
+        @Override
+        public int length() {
+            return "testpassword".length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return "testpassword".charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return "testpassword".subSequence(start, end);
+        }
+    }
+
+    private static class FailingPassword extends BlockingPassword {
+        FailingPassword() {
+            super(new CountDownLatch(0));
+        }
+
+        @Override
+        public String toString() {
+            throw new IllegalStateException(Thread.currentThread().getName());
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.demo.security;
+
+import com.example.demo.TestUtils;
+import com.example.demo.model.persistence.User;
+import com.example.demo.model.persistence.repositories.UserRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.CredentialsContainer;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class UserDetailsCacheTest {
+    private static final long TTL_SECONDS = 300;
+    private static final long MISS_TTL_SECONDS = 30;
+
+    private final AtomicLong now = new AtomicLong(1_000_000L);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private UserDetailsCache cache;
+    private UserDetailsServiceImpl userDetailsService;
+
+    @Before
+    public void setup() {
+        cache = new UserDetailsCache(100, TTL_SECONDS, MISS_TTL_SECONDS, now::get);
+        userDetailsService = new UserDetailsServiceImpl();
+        TestUtils.injectObject(userDetailsService, "userRepository", userRepository);
+        TestUtils.injectObject(userDetailsService, "userDetailsCache", cache);
+    }
+
+    @Test
+    public void unknown_usernames_are_remembered() throws Exception{
+        assertUnknown("ghost");
+        assertUnknown("ghost");
+        // the second attempt never reached the database
+        verify(userRepository, times(1)).findByUsername("ghost");
+    }
+
+    @Test
+    public void remembered_unknown_username_expires() throws Exception{
+        assertUnknown("ghost");
+        now.addAndGet(MISS_TTL_SECONDS * 1000);
+        assertUnknown("ghost");
+        verify(userRepository, times(2)).findByUsername("ghost");
+    }
+
+    @Test
+    public void signup_clears_a_remembered_unknown_username() throws Exception{
+        assertUnknown("test");
+        cache.removeUserFromCache("test");
+        when(userRepository.findByUsername("test")).thenReturn(user("test", "hash"));
+        assertEquals("test", userDetailsService.loadUserByUsername("test").getUsername());
+    }
+
+    @Test
+    public void cached_user_expires_after_its_time_to_live() throws Exception{
+        cache.putUserInCache(new ApplicationUserDetails("test", "hash", 7L, 5L));
+        now.addAndGet(TTL_SECONDS * 1000 - 1);
+        UserDetails cached = cache.getUserFromCache("test");
+        assertEquals("hash", cached.getPassword());
+        // a copy, so erasing the principal's password after login does not reach the cache
+        assertNotSame(cached, cache.getUserFromCache("test"));
+        now.addAndGet(1);
+        assertNull(cache.getUserFromCache("test"));
+    }
+
+    @Test
+    public void provider_serves_repeated_logins_from_the_cache() throws Exception{
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(4);
+        when(userRepository.findByUsername("test")).thenReturn(user("test", encoder.encode("password")));
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
+        provider.setUserDetailsService(userDetailsService);
+        provider.setPasswordEncoder(encoder);
+        provider.setUserCache(cache);
+        for (int i = 0; i < 3; i++) {
+            // as the provider manager does after every login
+            ((CredentialsContainer) provider.authenticate(
+                    new UsernamePasswordAuthenticationToken("test", "password"))).eraseCredentials();
+        }
+        verify(userRepository, times(1)).findByUsername("test");
+    }
+
+    private void assertUnknown(String username) {
+        try {
+            userDetailsService.loadUserByUsername(username);
+            fail(username + " was found");
+        } catch (UsernameNotFoundException e) {
+            // expected
+        }
+    }
+
+    private static User user(String username, String password) {
+        User user = new User();
+        user.setId(7L);
+        user.setUsername(username);
+        user.setPassword(password);
+        return user;
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.demo.service;
+
+import com.example.demo.TestUtils;
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.repositories.CartRepository;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.example.demo.model.persistence.repositories.UserRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class CartServiceConcurrencyTest {
+    private static final int THREADS = 8;
+    private static final int ADDS_PER_THREAD = 25;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Item item;
+
+    @Before
+    public void setup() {
+        // items come from the V3__seed.sql migration
+        item = itemRepository.findAll().get(0);
+    }
+
+    @Test
+    public void optimistic_updates_never_lose_a_saved_add() throws Exception{
+        // H2 1.4.200 can drop a committed write when several transactions update one row at once, even at
+        // SERIALIZABLE, and the version check never sees it; this hammer therefore runs against a store that
+        // keeps every commit, with the versioned compare-and-set a database UPDATE gives
+        VersionedCartStore store = new VersionedCartStore(99L);
+        CartRepository versionedRepository = mock(CartRepository.class);
+        when(versionedRepository.findWithLinesById(99L)).thenAnswer(invocation -> {
+            Cart cart = store.load();
+            // hold the copy for a moment so other writers commit on top of it
+            Thread.sleep(1);
+            return Optional.of(cart);
+        });
+        when(versionedRepository.save(any(Cart.class))).thenAnswer(invocation -> store.save(invocation.getArgument(0)));
+        PlatformTransactionManager noTransactions = mock(PlatformTransactionManager.class);
+        // no stripes, so the writers really race and only the version check keeps them apart
+        CartService cartService = new CartService(versionedRepository, userRepository, noTransactions,
+                new WriteBehindCartStore(versionedRepository, noTransactions, false, 100, 600000), 1_000, false, 64);
+        AtomicInteger gaveUp = new AtomicInteger();
+        int succeeded = hammer(cartService, 99L, gaveUp);
+        assertEquals(0, gaveUp.get());
+        assertEquals(THREADS * ADDS_PER_THREAD, succeeded);
+        // the writers did collide, and each stale save was retried on a reloaded cart
+        assertTrue(store.conflicts > 0);
+        // each add is in the last commit exactly once
+        Cart cart = store.load();
+        assertEquals(succeeded, cart.getQuantity(item));
+        assertEquals(Long.valueOf(succeeded), cart.getVersion());
+        assertEquals(0, item.getPrice().multiply(BigDecimal.valueOf(succeeded)).compareTo(cart.getTotal()));
+    }
+
+    @Test
+    public void striped_updates_keep_every_add() throws Exception{
+        CartService cartService = new CartService(cartRepository, userRepository, transactionManager,
+                writeBehindDisabled(), 5, true, 64);
+        long cartId = cartRepository.save(new Cart()).getId();
+        // against the bundled H2 it is the stripes, not the version check, that keep every add
+        int succeeded = hammer(cartService, cartId, new AtomicInteger());
+        // every add went through, none was lost
+        assertEquals(THREADS * ADDS_PER_THREAD, succeeded);
+        assertCart(cartId, succeeded);
+    }
+
+    private int hammer(CartService cartService, long cartId, AtomicInteger gaveUp) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger succeeded = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < ADDS_PER_THREAD; i++) {
+                        try {
+                            // every update loads its own copy of the cart
+                            cartService.update(cartId, c -> c.addItem(item, 1));
+                            succeeded.incrementAndGet();
+                        } catch (OptimisticLockingFailureException e) {
+                            gaveUp.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return succeeded.get();
+    }
+
+    private WriteBehindCartStore writeBehindDisabled() {
+        return new WriteBehindCartStore(cartRepository, transactionManager, false, 100, 600000);
+    }
+
+    /**
+     * Keeps the last committed cart. A save only goes through when it was made from that commit, like the
+     * versioned UPDATE Hibernate issues, and every load gets its own copy.
+     */
+    private static final class VersionedCartStore {
+        private Cart committed;
+
+        private int conflicts;
+
+        VersionedCartStore(long cartId) {
+            committed = new Cart();
+            committed.setId(cartId);
+            TestUtils.injectObject(committed, "version", 0L);
+        }
+
+        synchronized Cart load() {
+            return committed.copy();
+        }
+
+        synchronized Cart save(Cart cart) {
+            if (!committed.getVersion().equals(cart.getVersion())) {
+                conflicts++;
+                throw new ObjectOptimisticLockingFailureException(Cart.class, cart.getId());
+            }
+            Cart saved = cart.copy();
+            TestUtils.injectObject(saved, "version", cart.getVersion() + 1);
+            committed = saved;
+            return saved.copy();
+        }
+    }
+
+    private void assertCart(long cartId, int expectedQuantity) {
+        Cart cart = cartRepository.findById(cartId).get();
+        assertEquals(expectedQuantity, cart.getQuantity(item));
+        assertEquals(0, item.getPrice().multiply(BigDecimal.valueOf(expectedQuantity)).compareTo(cart.getTotal()));
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.demo.service;
+
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.repositories.CartRepository;
+import com.example.demo.model.persistence.repositories.UserRepository;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.SQLException;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CartServiceTest {
+    private CartRepository cartRepository = mock(CartRepository.class);
+    private UserRepository userRepository = mock(UserRepository.class);
+    private CartService cartService;
+
+    @Before
+    public void setup() {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        cartService = new CartService(cartRepository, userRepository, transactionManager,
+                new WriteBehindCartStore(cartRepository, transactionManager, false, 100, 600000), 5, true, 64);
+        Cart cart = new Cart();
+        cart.setId(5L);
+        when(cartRepository.findWithLinesById(5L)).thenAnswer(invocation -> Optional.of(cart));
+    }
+
+    @Test
+    public void stale_cart_is_reloaded_and_the_change_reapplied() throws Exception{
+        // another writer saved the cart in between, the second save goes through
+        when(cartRepository.save(any(Cart.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Cart.class, 5L))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        AtomicInteger attempts = new AtomicInteger();
+        cartService.update(5L, c -> attempts.incrementAndGet());
+        assertEquals(2, attempts.get());
+        verify(cartRepository, times(2)).findWithLinesById(5L);
+    }
+
+    @Test
+    public void update_gives_up_after_the_last_attempt() throws Exception{
+        when(cartRepository.save(any(Cart.class))).thenThrow(new ObjectOptimisticLockingFailureException(Cart.class, 5L));
+        AtomicInteger attempts = new AtomicInteger();
+        try {
+            cartService.update(5L, c -> attempts.incrementAndGet());
+            fail("a cart that never saved was reported as updated");
+        } catch (OptimisticLockingFailureException e) {
+            // bounded by the configured attempts, each on a freshly loaded cart
+            assertEquals(5, attempts.get());
+            verify(cartRepository, times(5)).findWithLinesById(5L);
+        }
+    }
+
+    @Test
+    public void racing_cart_line_insert_is_retried() throws Exception{
+        // the first save loses the race on the cart line key, the second one goes through
+        when(cartRepository.save(any(Cart.class)))
+                .thenThrow(violation("\"PUBLIC.UK_CART_LINE_CART_ITEM_INDEX_B ON PUBLIC.CART_LINE(CART_ID, ITEM_ID)\""))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        AtomicInteger attempts = new AtomicInteger();
+        cartService.update(5L, c -> attempts.incrementAndGet());
+        assertEquals(2, attempts.get());
+        // loaded once under the lock and once more for the retry
+        verify(cartRepository, times(2)).findWithLinesById(5L);
+    }
+
+    @Test
+    public void other_integrity_violations_are_not_retried() throws Exception{
+        when(cartRepository.save(any(Cart.class)))
+                .thenThrow(violation("\"PUBLIC.FK_CART_LINE_ITEM: PUBLIC.CART_LINE FOREIGN KEY(ITEM_ID)\""));
+        AtomicInteger attempts = new AtomicInteger();
+        try {
+            cartService.update(5L, c -> attempts.incrementAndGet());
+            fail("the foreign key violation was retried away");
+        } catch (DataIntegrityViolationException e) {
+            assertEquals(1, attempts.get());
+        }
+    }
+
+    @Test
+    public void missing_cart_is_not_updated() throws Exception{
+        when(cartRepository.findWithLinesById(6L)).thenReturn(Optional.empty());
+        assertNull(cartService.update(6L, c -> fail("no cart to mutate")));
+    }
+
+    private static DataIntegrityViolationException violation(String constraint) {
+        return new DataIntegrityViolationException("could not execute batch",
+                new ConstraintViolationException("could not execute batch", new SQLException("violation", "23505"),
+                        constraint));
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.demo.service;
+
+import org.junit.Test;
+import org.springframework.http.ResponseEntity;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class IdempotencyStoreTest {
+    private IdempotencyStore store = new IdempotencyStore(100, 3600);
+
+    @Test
+    public void waiting_retry_gets_the_successful_response() throws Exception{
+        AtomicInteger runs = new AtomicInteger();
+        ResponseEntity<String> retry = raceWithFirstAttempt(() -> ResponseEntity.ok("first"),
+                () -> ResponseEntity.ok("run " + runs.incrementAndGet()));
+        assertEquals("first", retry.getBody());
+        assertEquals("true", retry.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+        assertEquals(0, runs.get());
+        assertEquals(1, store.replayCount());
+    }
+
+    @Test
+    public void waiting_retry_reruns_after_an_error_response() throws Exception{
+        ResponseEntity<String> retry = raceWithFirstAttempt(() -> ResponseEntity.status(503).build(),
+                () -> ResponseEntity.ok("retried"));
+        // the retry ran its own request rather than being handed the 503
+        assertEquals(200, retry.getStatusCodeValue());
+        assertEquals("retried", retry.getBody());
+        assertNull(retry.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+        assertEquals(0, store.replayCount());
+    }
+
+    @Test
+    public void waiting_retry_reruns_after_an_exception() throws Exception{
+        ResponseEntity<String> retry = raceWithFirstAttempt(() -> {
+            throw new IllegalStateException("first attempt failed");
+        }, () -> ResponseEntity.ok("retried"));
+        assertEquals("retried", retry.getBody());
+        assertNull(retry.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+        // and the key now holds the retry's response
+        assertEquals("retried", store.execute("test", "key-1", () -> ResponseEntity.ok("third")).getBody());
+    }
+
+    @Test
+    public void keys_are_separate_per_scope() throws Exception{
+        store.execute("test", "key-1", () -> ResponseEntity.ok("test"));
+        assertEquals("other", store.execute("other", "key-1", () -> ResponseEntity.ok("other")).getBody());
+    }
+
+    /**
+     * Runs the first attempt and, while it holds the key, starts the retry on another thread and waits
+     * until the retry is parked on the first attempt's pending response.
+     */
+    private ResponseEntity<String> raceWithFirstAttempt(Supplier<ResponseEntity<String>> first,
+            Supplier<ResponseEntity<String>> retry) throws Exception {
+        ExecutorService retries = Executors.newSingleThreadExecutor();
+        AtomicReference<Thread> retryThread = new AtomicReference<>();
+        AtomicReference<Future<ResponseEntity<String>>> retried = new AtomicReference<>();
+        try {
+            try {
+                store.execute("test", "key-1", () -> {
+                    retried.set(retries.submit(() -> {
+                        retryThread.set(Thread.currentThread());
+                        return store.execute("test", "key-1", retry);
+                    }));
+                    long deadline = System.currentTimeMillis() + 5000;
+                    while ((retryThread.get() == null || retryThread.get().getState() != Thread.State.WAITING)
+                            && System.currentTimeMillis() < deadline) {
+                        sleep();
+                    }
+                    assertEquals(Thread.State.WAITING, retryThread.get().getState());
+                    return first.get();
+                });
+            } catch (IllegalStateException e) {
+                assertEquals("first attempt failed", e.getMessage());
+            }
+            return retried.get().get(5, TimeUnit.SECONDS);
+        } finally {
+            retries.shutdownNow();
+        }
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(5);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
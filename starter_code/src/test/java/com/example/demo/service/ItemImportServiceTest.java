@@ -0,0 +1,100 @@
+package com.example.demo.service;
+
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.example.demo.model.responses.ItemImportResult;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class ItemImportServiceTest {
+    @Autowired
+    private ItemImportService itemImportService;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private ItemCatalog itemCatalog;
+
+    @Test
+    public void import_csv() throws Exception{
+        String name = "Imported " + System.nanoTime();
+        ItemImportResult result = itemImportService.importItems(stream(
+                "name,price,description\r\n"
+                        + "\"" + name + "\",4.50,\"Quoted, with a comma and \"\"quotes\"\"\"\r\n"
+                        + name + ",5.00,\"spans\nlines\"\r\n"
+                        // invalid price
+                        + name + ",free,description\r\n"),
+                ItemImportService.Format.CSV);
+        assertEquals(2, result.getInserted());
+        assertEquals(1, result.getRejected());
+        List<Item> items = itemRepository.findByName(name);
+        assertEquals(2, items.size());
+        assertEquals("Quoted, with a comma and \"quotes\"", items.get(0).getDescription());
+        assertEquals("spans\nlines", items.get(1).getDescription());
+    }
+
+    @Test
+    public void import_ndjson_updates_items_with_an_id() throws Exception{
+        String name = "Imported " + System.nanoTime();
+        Item item = new Item();
+        item.setName("before");
+        item.setPrice(BigDecimal.ONE);
+        item.setDescription("before");
+        item = itemRepository.save(item);
+        // cached before the import
+        itemCatalog.findById(item.getId());
+        ItemImportResult result = itemImportService.importItems(stream(
+                "{\"id\":" + item.getId() + ",\"name\":\"" + name + "\",\"price\":\"2.50\",\"description\":\"after\"}\n"
+                        + "{\"name\":\"" + name + "\",\"price\":3,\"description\":\"new\"}\n"
+                        // unknown id
+                        + "{\"id\":-1,\"name\":\"" + name + "\",\"price\":3,\"description\":\"new\"}\n"
+                        // missing description
+                        + "{\"name\":\"" + name + "\",\"price\":3}\n"),
+                ItemImportService.Format.NDJSON);
+        assertEquals(1, result.getInserted());
+        assertEquals(1, result.getUpdated());
+        assertEquals(2, result.getRejected());
+        // the import invalidated the catalog
+        assertEquals("after", itemCatalog.findById(item.getId()).get().getDescription());
+        assertEquals(0, new BigDecimal("2.50").compareTo(itemCatalog.findById(item.getId()).get().getPrice()));
+        // and bumped the version, so carts holding the item get a new entity tag
+        assertEquals(Long.valueOf(item.getVersion() + 1), itemCatalog.findById(item.getId()).get().getVersion());
+    }
+
+    @Test
+    public void csv_reader_splits_records() throws Exception{
+        ItemImportService.CsvReader reader = new ItemImportService.CsvReader(
+                new StringReader("a,\"b,c\",\n\"d\"\"e\"\r\nlast"));
+        assertEquals(Arrays.asList("a", "b,c", ""), reader.next());
+        assertEquals(Arrays.asList("d\"e"), reader.next());
+        assertEquals(Arrays.asList("last"), reader.next());
+        assertNull(reader.next());
+    }
+
+    @Test(expected = IOException.class)
+    public void csv_without_required_columns_is_refused() throws Exception{
+        itemImportService.importItems(stream("id,name\n1,x\n"), ItemImportService.Format.CSV);
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.demo.service;
+
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.example.demo.model.responses.ItemView;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ItemNameIndexTest {
+    private ItemRepository itemRepository = mock(ItemRepository.class);
+    private ItemNameIndex index;
+
+    @Before
+    public void setup() {
+        index = new ItemNameIndex(itemRepository, mock(PlatformTransactionManager.class));
+        when(itemRepository.streamViews()).thenReturn(Arrays.asList(
+                view(1L, "Round Widget"),
+                view(2L, "Square Widget"),
+                view(3L, "round table"),
+                view(4L, "Roundabout")).stream());
+        index.rebuild();
+    }
+
+    @Test
+    public void prefix_matches_ignore_case_in_name_order() throws Exception{
+        assertEquals(Arrays.asList("round table", "Round Widget", "Roundabout"), names(index.search("ROUND", 10)));
+        assertEquals(Arrays.asList("round table", "Round Widget", "Roundabout"), names(index.search("round ", 10)));
+        assertEquals(Collections.emptyList(), names(index.search("triangle", 10)));
+    }
+
+    @Test
+    public void limit_is_respected() throws Exception{
+        assertEquals(1, index.search("r", 1).size());
+        assertEquals(3, index.search("r", 1000).size());
+    }
+
+    @Test
+    public void changed_items_are_patched_in() throws Exception{
+        // item 2 renamed, item 4 deleted, item 5 inserted
+        when(itemRepository.findViewsByIdIn(any())).thenReturn(Arrays.asList(
+                view(2L, "Round Square"),
+                view(5L, "Roundel")));
+        index.onItemsChanged(ItemsChangedEvent.of(Arrays.asList(2L, 4L, 5L)));
+        assertEquals(Arrays.asList("Round Square", "round table", "Round Widget", "Roundel"),
+                names(index.search("round", 10)));
+        assertEquals(Collections.emptyList(), names(index.search("square", 10)));
+        assertEquals(4, index.size());
+    }
+
+    private static ItemView view(long id, String name) {
+        return new ItemView(id, name, BigDecimal.ONE);
+    }
+
+    private static List<String> names(List<ItemView> items) {
+        return items.stream().map(ItemView::getName).collect(Collectors.toList());
+    }
+}
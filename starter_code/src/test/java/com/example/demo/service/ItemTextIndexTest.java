@@ -0,0 +1,77 @@
+package com.example.demo.service;
+
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.example.demo.model.responses.ItemView;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ItemTextIndexTest {
+    private ItemRepository itemRepository = mock(ItemRepository.class);
+    private ItemTextIndex index;
+
+    @Before
+    public void setup() {
+        index = new ItemTextIndex(itemRepository, mock(PlatformTransactionManager.class));
+        when(itemRepository.streamViewsWithDescription()).thenAnswer(invocation -> Arrays.asList(
+                view(1L, "Round Widget", "A widget that is round"),
+                view(2L, "Square Widget", "A widget that is square, not round"),
+                view(3L, "Table", "A round table for four"),
+                view(4L, "Lamp", "Bright and shiny")).stream());
+        index.rebuild();
+    }
+
+    @Test
+    public void tokenizer_splits_on_punctuation_and_lowercases() throws Exception{
+        assertEquals(Arrays.asList("round", "widget", "v2"), ItemTextIndex.tokenize("Round-Widget, v2!"));
+    }
+
+    @Test
+    public void best_match_comes_first() throws Exception{
+        // both words, twice each, in the shortest document
+        List<Long> ids = ids(index.search("round widget", 10));
+        assertEquals(Long.valueOf(1L), ids.get(0));
+        assertEquals(3, ids.size());
+        assertEquals(Arrays.asList(4L), ids(index.search("SHINY", 10)));
+        assertEquals(Collections.emptyList(), ids(index.search("triangle", 10)));
+    }
+
+    @Test
+    public void results_leave_out_descriptions() throws Exception{
+        ItemView item = index.search("lamp", 1).get(0);
+        assertEquals("Lamp", item.getName());
+        assertEquals(null, item.getDescription());
+    }
+
+    @Test
+    public void changed_items_are_reindexed() throws Exception{
+        // lamp described differently, table deleted, chair inserted
+        when(itemRepository.findViewsWithDescriptionByIdIn(any())).thenReturn(Arrays.asList(
+                view(4L, "Lamp", "Dim and round"),
+                view(5L, "Chair", "Goes with the round table")));
+        index.onItemsChanged(ItemsChangedEvent.of(Arrays.asList(3L, 4L, 5L)));
+        assertEquals(Collections.emptyList(), ids(index.search("shiny", 10)));
+        assertEquals(Arrays.asList(5L), ids(index.search("table", 10)));
+        assertEquals(4, index.search("round", 10).size());
+        assertEquals(4, index.size());
+    }
+
+    private static ItemView view(long id, String name, String description) {
+        return new ItemView(id, name, BigDecimal.ONE, description);
+    }
+
+    private static List<Long> ids(List<ItemView> items) {
+        return items.stream().map(ItemView::getId).collect(Collectors.toList());
+    }
+}
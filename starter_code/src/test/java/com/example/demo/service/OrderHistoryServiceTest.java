@@ -0,0 +1,123 @@
+package com.example.demo.service;
+
+import com.example.demo.model.persistence.User;
+import com.example.demo.model.persistence.UserOrder;
+import com.example.demo.model.persistence.repositories.OrderRepository;
+import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.model.responses.OrderHistoryPage;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class OrderHistoryServiceTest {
+    @Autowired
+    private OrderHistoryService orderHistoryService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private User user;
+
+    @Before
+    public void setup() {
+        user = new User();
+        user.setUsername("history-" + System.nanoTime());
+        user.setPassword("password");
+        user = userRepository.save(user);
+        List<UserOrder> orders = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            UserOrder order = new UserOrder();
+            order.setUser(user);
+            order.setTotal(BigDecimal.valueOf(i));
+            orders.add(order);
+        }
+        orderRepository.saveAll(orders);
+    }
+
+    @Test
+    public void pages_walk_the_whole_history_once() throws Exception{
+        int seen = 0;
+        long after = 0;
+        long lastId = 0;
+        while (true) {
+            OrderHistoryPage page = orderHistoryService.page(user.getId(), after, 10);
+            for (UserOrder order : page.getOrders()) {
+                // ids only ever increase, nothing is repeated or skipped
+                assertTrue(order.getId() > lastId);
+                lastId = order.getId();
+                seen++;
+            }
+            if (page.getNext() == null) {
+                break;
+            }
+            after = page.getNext();
+        }
+        assertEquals(25, seen);
+    }
+
+    @Test
+    public void export_writes_one_line_per_order() throws Exception{
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        orderHistoryService.export(user.getId(), out);
+        String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertEquals(25, lines.length);
+        for (String line : lines) {
+            JsonNode order = objectMapper.readTree(line);
+            assertEquals(user.getUsername(), order.get("user").get("username").asText());
+        }
+    }
+
+    @Test
+    public void export_walks_every_page() throws Exception{
+        // 200 orders fill two export pages exactly
+        List<UserOrder> orders = new ArrayList<>();
+        for (int i = 0; i < 175; i++) {
+            UserOrder order = new UserOrder();
+            order.setUser(user);
+            order.setTotal(BigDecimal.ONE);
+            orders.add(order);
+        }
+        orderRepository.saveAll(orders);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        orderHistoryService.export(user.getId(), out);
+        String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertEquals(200, lines.length);
+        long lastId = 0;
+        for (String line : lines) {
+            long id = objectMapper.readTree(line).get("id").asLong();
+            // in id order, nothing repeated or skipped across pages
+            assertTrue(id > lastId);
+            lastId = id;
+        }
+    }
+
+    @Test
+    public void unknown_user_has_empty_history() throws Exception{
+        OrderHistoryPage page = orderHistoryService.page(-1, 0, 10);
+        assertEquals(0, page.getOrders().size());
+        assertNull(page.getNext());
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.demo.service;
+
+import com.example.demo.model.persistence.User;
+import com.example.demo.model.persistence.UserOrder;
+import com.example.demo.model.persistence.repositories.OrderRepository;
+import com.example.demo.model.responses.OrderIntakeStatus;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OrderIntakeServiceTest {
+    private OrderRepository orderRepository = mock(OrderRepository.class);
+    private OrderSummaryService orderSummaryService = mock(OrderSummaryService.class);
+    private PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private AtomicLong ids = new AtomicLong();
+    private User user;
+
+    @Before
+    public void setup() {
+        user = new User();
+        user.setId(0L);
+        user.setUsername("test");
+        // a slow database that hands out ids like an insert would
+        when(orderRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            Thread.sleep(5);
+            List<UserOrder> orders = invocation.getArgument(0);
+            for (UserOrder order : orders) {
+                order.setId(ids.incrementAndGet());
+            }
+            return orders;
+        });
+    }
+
+    @Test
+    public void no_order_is_lost_on_shutdown() throws Exception{
+        OrderIntakeService intake = new OrderIntakeService(orderRepository, orderSummaryService, transactionManager, 10000, 20, 10000, 3600);
+        intake.start();
+        List<OrderIntakeStatus> accepted = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            accepted.add(intake.accept(order()));
+        }
+        // graceful shutdown returns only once the queue is drained
+        intake.shutdown();
+        assertEquals(0, intake.queueDepth());
+        assertEquals(1000, ids.get());
+        // every written order reached the user's summary
+        verify(orderSummaryService, times(1000)).record(any(UserOrder.class));
+        for (OrderIntakeStatus status : accepted) {
+            OrderIntakeStatus finished = intake.status(status.getReference());
+            assertEquals(OrderIntakeStatus.State.COMPLETED, finished.getState());
+            assertNotNull(finished.getOrderId());
+        }
+        // intake is closed after shutdown
+        assertNull(intake.accept(order()));
+    }
+
+    @Test
+    public void full_queue_rejects_order() throws Exception{
+        // writer is kept busy so the one slot stays taken
+        when(orderRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return invocation.getArgument(0);
+        });
+        OrderIntakeService intake = new OrderIntakeService(orderRepository, orderSummaryService, transactionManager, 1, 1, 10000, 3600);
+        intake.start();
+        int rejected = 0;
+        for (int i = 0; i < 5; i++) {
+            if (intake.accept(order()) == null) {
+                rejected++;
+            }
+        }
+        assertTrue(rejected > 0);
+        intake.shutdown();
+    }
+
+    @Test
+    public void intake_is_closed_until_started() throws Exception{
+        OrderIntakeService intake = new OrderIntakeService(orderRepository, orderSummaryService, transactionManager, 10, 10, 10, 3600);
+        // constructing the service does not start a writer, so nothing may be queued yet
+        assertNull(intake.accept(order()));
+        intake.start();
+        assertNotNull(intake.accept(order()));
+        intake.shutdown();
+        assertEquals(1, ids.get());
+    }
+
+    @Test
+    public void unknown_reference_has_no_status() throws Exception{
+        OrderIntakeService intake = new OrderIntakeService(orderRepository, orderSummaryService, transactionManager, 10, 10, 10, 3600);
+        intake.start();
+        assertNull(intake.status("unknown"));
+        intake.shutdown();
+    }
+
+    private UserOrder order() {
+        UserOrder order = new UserOrder();
+        order.setUser(user);
+        return order;
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.demo.service;
+
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.User;
+import com.example.demo.model.persistence.UserOrder;
+import com.example.demo.model.persistence.UserOrderSummary;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.example.demo.model.persistence.repositories.OrderRepository;
+import com.example.demo.model.persistence.repositories.UserOrderSummaryRepository;
+import com.example.demo.model.persistence.repositories.UserRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class OrderSummaryServiceTest {
+    @Autowired
+    private OrderSummaryService orderSummaryService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private UserOrderSummaryRepository summaryRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    private User user;
+
+    private Item item;
+
+    @Before
+    public void setup() {
+        user = new User();
+        user.setUsername("summary-" + System.nanoTime());
+        user.setPassword("password");
+        user = userRepository.save(user);
+        // items come from the V3__seed.sql migration
+        item = itemRepository.findAll().get(0);
+    }
+
+    @Test
+    public void orders_are_added_to_the_summary() throws Exception{
+        for (int i = 0; i < 3; i++) {
+            orderSummaryService.save(order(2));
+        }
+        UserOrderSummary summary = orderSummaryService.find(user.getId());
+        assertEquals(3, summary.getOrderCount());
+        assertEquals(6L, (long) summary.getItemQuantities().get(item.getId()));
+        assertEquals(3 * order(2).getLines().get(0).getTotalCents(), summary.getTotalSpendCents());
+    }
+
+    @Test
+    public void rebuild_repairs_drifted_summaries() throws Exception{
+        orderSummaryService.save(order(1));
+        orderSummaryService.save(order(4));
+        long expectedSpend = orderSummaryService.find(user.getId()).getTotalSpendCents();
+        // an order written behind the summary's back
+        orderRepository.save(order(5));
+        assertEquals(2, orderSummaryService.find(user.getId()).getOrderCount());
+        // and a summary that lost its row entirely
+        summaryRepository.deleteById(user.getId());
+        int rebuilt = orderSummaryService.rebuild();
+        assertTrue(rebuilt >= 1);
+        UserOrderSummary summary = orderSummaryService.find(user.getId());
+        assertEquals(3, summary.getOrderCount());
+        assertEquals(10L, (long) summary.getItemQuantities().get(item.getId()));
+        assertEquals(expectedSpend + order(5).getLines().get(0).getTotalCents(), summary.getTotalSpendCents());
+    }
+
+    @Test
+    public void racing_first_orders_share_one_summary() throws Exception{
+        int threads = 4;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<UserOrder>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit((Callable<UserOrder>) () -> {
+                    start.await();
+                    return orderSummaryService.save(order(1));
+                }));
+            }
+            start.countDown();
+            for (Future<UserOrder> result : results) {
+                // none of the orders is rolled back by a duplicate summary row
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(threads, orderRepository.findByUserId(user.getId()).size());
+        assertEquals(threads, orderSummaryService.find(user.getId()).getOrderCount());
+    }
+
+    @Test
+    public void rebuild_resets_summaries_of_users_without_orders() throws Exception{
+        // a summary left behind after the user's orders were removed
+        UserOrderSummary stale = new UserOrderSummary(user.getId());
+        stale.add(order(3));
+        summaryRepository.save(stale);
+        orderSummaryService.rebuild();
+        UserOrderSummary summary = orderSummaryService.find(user.getId());
+        assertEquals(0, summary.getOrderCount());
+        assertEquals(0, summary.getTotalSpendCents());
+        assertTrue(summary.getItemQuantities().isEmpty());
+    }
+
+    @Test
+    public void users_without_orders_have_an_empty_summary() throws Exception{
+        UserOrderSummary summary = orderSummaryService.find(user.getId());
+        assertEquals(0, summary.getOrderCount());
+        assertEquals(0, summary.getTotalSpendCents());
+        List<Long> ids = orderRepository.findUserIdsWithOrders();
+        assertTrue(!ids.contains(user.getId()));
+    }
+
+    private UserOrder order(int quantity) {
+        Cart cart = new Cart();
+        cart.setUser(user);
+        cart.addItem(item, quantity);
+        return UserOrder.createFromCart(cart);
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.demo.service;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class SchemaIndexVerifierTest {
+    @Autowired
+    private SchemaIndexVerifier schemaIndexVerifier;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void migrated_schema_has_every_expected_index() throws Exception{
+        assertEquals(0, schemaIndexVerifier.missingIndexes().size());
+    }
+
+    @Test
+    public void items_by_name_use_the_name_index() {
+        // ItemRepository.findByName
+        assertUsesIndex("select id, name, price, description from item where name = 'Round Widget'",
+                "IDX_ITEM_NAME_ID");
+    }
+
+    @Test
+    public void orders_by_user_use_the_user_index() {
+        // OrderRepository.findByUser and findByUserId
+        assertUsesIndex("select id, user_id, total from user_order where user_id = 1", "IDX_USER_ORDER_USER_ID");
+        // OrderRepository.findByUserIdAndIdGreaterThanOrderByIdAsc
+        assertUsesIndex("select id, user_id, total from user_order where user_id = 1 and id > 10 order by id limit 11",
+                "IDX_USER_ORDER_USER_ID");
+    }
+
+    @Test
+    public void cart_by_user_uses_the_keys_and_the_cart_index() {
+        // CartRepository.findByUser, both tables read by primary key
+        assertUsesIndex("select c.id, c.total, c.version from cart c join user u on c.id = u.cart_id where u.id = 1",
+                "PRIMARY_KEY");
+        // the user of a cart, loaded through the inverse side of User.cart
+        assertUsesIndex("select id, username, password, cart_id from user where cart_id = 1", "IDX_USER_CART_ID");
+    }
+
+    @Test
+    public void cart_lines_by_item_use_the_item_index() {
+        // the cart lines that reference an item
+        assertUsesIndex("select id, cart_id, item_id, quantity from cart_line where item_id = 1",
+                "IDX_CART_LINE_ITEM_ID");
+    }
+
+    @Test
+    public void user_by_username_uses_the_unique_index() {
+        // UserRepository.findByUsername and findIdByUsername
+        assertUsesIndex("select id from user where username = 'test'", "UK_USER_USERNAME");
+    }
+
+    @Test
+    public void foreign_keys_are_backed_by_the_named_indexes() {
+        // H2 adds an unnamed index for a foreign key unless one on exactly its columns already exists
+        assertEquals(0, (int) jdbcTemplate.queryForObject("select count(*) from information_schema.indexes "
+                + "where index_name like 'FK_USER_CART_INDEX%' or index_name like 'FK_USER_ORDER_USER_INDEX%' "
+                + "or index_name like 'FK_CART_LINE_ITEM_INDEX%'", Integer.class));
+    }
+
+    private void assertUsesIndex(String query, String index) {
+        String plan = plan(query);
+        assertTrue(plan, plan.contains(index));
+        assertFalse(plan, plan.contains("tableScan"));
+    }
+
+    private String plan(String query) {
+        return jdbcTemplate.queryForObject("explain " + query, String.class);
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.demo.service;
+
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.repositories.CartRepository;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class WriteBehindCartStoreTest {
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private WriteBehindCartStore store;
+
+    private Item item;
+
+    @Before
+    public void setup() {
+        store = new WriteBehindCartStore(cartRepository, transactionManager, true, 100, 600000);
+        // items come from the V3__seed.sql migration
+        item = itemRepository.findAll().get(0);
+    }
+
+    @Test
+    public void mutations_stay_in_memory_until_flushed() throws Exception{
+        Cart cart = cartRepository.save(new Cart());
+        for (int i = 0; i < 10; i++) {
+            store.update(cart, c -> c.addItem(item, 1));
+        }
+        // buffered cart has every unit, the database has none yet
+        assertEquals(10, store.get(cart.getId()).getQuantity(item));
+        assertEquals(0, cartRepository.findById(cart.getId()).get().getQuantity(item));
+        // ten mutations cost a single write
+        Cart flushed = store.flush(cart);
+        assertEquals(10, flushed.getQuantity(item));
+        assertEquals(10, cartRepository.findById(cart.getId()).get().getQuantity(item));
+        // later mutations continue from the persisted version
+        store.update(cart, c -> c.addItem(item, 1));
+        store.flushAll();
+        assertEquals(11, cartRepository.findById(cart.getId()).get().getQuantity(item));
+    }
+
+    @Test
+    public void snapshots_are_not_changed_by_later_mutations() throws Exception{
+        Cart cart = cartRepository.save(new Cart());
+        Cart first = store.update(cart, c -> c.addItem(item, 1));
+        Cart second = store.update(cart, c -> c.addItem(item, 1));
+        assertEquals(1, first.getQuantity(item));
+        assertEquals(2, second.getQuantity(item));
+        assertSame(second, store.get(cart.getId()));
+    }
+}